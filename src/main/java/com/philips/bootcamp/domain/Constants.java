@@ -11,7 +11,10 @@ public class Constants {
   public static final File sourceDirectory;
   public static final File dataDirectory;
   public static final File sampleDirectory;
-  public static final File output;
+  public static final File cacheDirectory;
+  public static final File repositoryDirectory;
+  public static final File mirrorDirectory;
+  public static final File trashDirectory;
 
   private Constants() {}
 
@@ -45,6 +48,24 @@ public class Constants {
       sampleDirectory.mkdir();
     }
 
-    output = new File(rootDirectory, "out");
+    cacheDirectory = new File(rootDirectory, "cache");
+    if (!cacheDirectory.exists()) {
+      cacheDirectory.mkdir();
+    }
+
+    repositoryDirectory = new File(rootDirectory, "repository");
+    if (!repositoryDirectory.exists()) {
+      repositoryDirectory.mkdir();
+    }
+
+    mirrorDirectory = new File(rootDirectory, "mirror");
+    if (!mirrorDirectory.exists()) {
+      mirrorDirectory.mkdir();
+    }
+
+    trashDirectory = new File(rootDirectory, "trash");
+    if (!trashDirectory.exists()) {
+      trashDirectory.mkdir();
+    }
   }
 }
\ No newline at end of file
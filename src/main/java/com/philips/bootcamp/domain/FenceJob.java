@@ -0,0 +1,107 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.domain;
+
+import java.util.UUID;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A fence run submitted to the job pool. The worker running it updates the status and progress,
+ * readers may poll it from any thread.
+ */
+public class FenceJob {
+  public static final String QUEUED = "queued";
+  public static final String RUNNING = "running";
+  public static final String DONE = "done";
+  public static final String FAILED = "failed";
+  public static final String CANCELLED = "cancelled";
+  public static final String TIMED_OUT = "timedOut";
+
+  private final String id = UUID.randomUUID().toString();
+  private final String project;
+  private final long submitted = System.currentTimeMillis();
+  private volatile String status = QUEUED;
+  private volatile long started;
+  private volatile long finished;
+  private volatile int totalTools;
+  private volatile int completedTools;
+  private volatile String result;
+
+  public FenceJob(String project) {
+    this.project = project;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getProject() {
+    return project;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public boolean isFinished() {
+    return !QUEUED.equals(status) && !RUNNING.equals(status);
+  }
+
+  public String getResult() {
+    return result;
+  }
+
+  public long getFinished() {
+    return finished;
+  }
+
+  public void start() {
+    started = System.currentTimeMillis();
+    status = RUNNING;
+  }
+
+  public void setTotalTools(int totalTools) {
+    this.totalTools = totalTools;
+  }
+
+  public void toolCompleted() {
+    completedTools++;
+  }
+
+  public void finish(String result, String status) {
+    this.result = result;
+    finished = System.currentTimeMillis();
+    this.status = status;
+  }
+
+  public JsonObject toJson() {
+    final JsonObject job = new JsonObject();
+    job.addProperty("id", id);
+    job.addProperty("project", project);
+    job.addProperty("status", status);
+    job.addProperty("submitted", submitted);
+    if (started != 0) {
+      job.addProperty("started", started);
+    }
+    if (finished != 0) {
+      job.addProperty("finished", finished);
+    }
+
+    final JsonObject progress = new JsonObject();
+    progress.addProperty("completedTools", completedTools);
+    progress.addProperty("totalTools", totalTools);
+    job.add("progress", progress);
+
+    if (result != null) {
+      try {
+        job.add("result", new JsonParser().parse(result));
+      } catch (final JsonParseException jpe) {
+        job.addProperty("result", result);
+      }
+    }
+    return job;
+  }
+}
@@ -1,12 +1,56 @@
 package com.philips.bootcamp.domain;
 
+import java.util.Collections;
+import java.util.Map;
 import com.google.gson.JsonObject;
 
 public interface Tool {
+    // epoch millis by which execute has to return, set by the fence
+    String DEADLINE = "deadline";
+
     String getName();
     String getDescription();
     JsonObject execute(JsonObject settings);
     JsonObject compare(JsonObject futureReport, JsonObject pastReport);
     boolean verifySettings(JsonObject settings);
     JsonObject getDefaultSettings();
+
+    // tools that can analyze a subset of the files, given as the "files" setting, return true
+    default boolean isIncremental() {
+        return false;
+    }
+
+    // tools that can analyze sources held in memory, without a project on disk, return true
+    default boolean canAnalyzeSource() {
+        return false;
+    }
+
+    default JsonObject analyze(String fileName, String source, JsonObject settings) {
+        return analyze(Collections.singletonMap(fileName, source), settings);
+    }
+
+    // analyzes all sources, keyed by file name, in one pass and reports them under those names
+    default JsonObject analyze(Map<String, String> sources, JsonObject settings) {
+        return null;
+    }
+
+    // tools reporting violations per file return true and implement executeReport and the compare of
+    // violation reports, so their reports stay compact until they leave the service
+    default boolean reportsViolations() {
+        return false;
+    }
+
+    default ViolationReport executeReport(JsonObject settings) {
+        return null;
+    }
+
+    default JsonObject compare(ViolationReport futureReport, ViolationReport pastReport) {
+        return compare(futureReport == null ? null : futureReport.toJson(),
+            pastReport == null ? null : pastReport.toJson());
+    }
+
+    // changes whenever the tool version or the rules selected by the settings change, null if unknown
+    default String getFingerprint(JsonObject settings) {
+        return null;
+    }
 }
\ No newline at end of file
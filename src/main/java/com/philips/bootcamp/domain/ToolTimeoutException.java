@@ -0,0 +1,15 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.domain;
+
+/**
+ * Thrown by a tool that stopped its run because the deadline given in its settings had passed.
+ */
+public class ToolTimeoutException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  public ToolTimeoutException(String tool) {
+    super(tool + " did not finish in time");
+  }
+}
@@ -0,0 +1,428 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.domain;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The violations a tool reported per file, held as columns instead of json trees. File names,
+ * rules, messages and severities are pooled, lines and contexts are plain ints, so a violation
+ * takes about twenty bytes. The violations of a file are stored together, files keep the order in
+ * which they were added. Json is only built when a report leaves the service.
+ */
+public class ViolationReport {
+  public static final String REPORT = "report";
+  public static final String METRICS = "metrics";
+  public static final String ERRORS = "errors";
+  public static final String LINE = "line";
+  public static final String RULE = "rule";
+  public static final String MESSAGE = "message";
+  public static final String CONTEXT = "context";
+
+  // the line of violations that are not reported at a line
+  public static final int NO_LINE = Integer.MIN_VALUE;
+
+  private static final int NONE = -1;
+  private static final byte NUMERIC_LINE = 1;
+  private static final byte HAS_CONTEXT = 2;
+
+  private final String levelName;
+  private final List<String> strings = new ArrayList<>();
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<String> levels = new ArrayList<>();
+  private Map<String, Integer> fileIndex;
+
+  private int fileCount;
+  private int[] fileNames = new int[16];
+  private int[] fileStarts = new int[17];
+
+  private int size;
+  private int[] lines = new int[64];
+  private byte[] levelIds = new byte[64];
+  private int[] rules = new int[64];
+  private int[] messages = new int[64];
+  private int[] contexts = new int[64];
+  private byte[] flags = new byte[64];
+
+  /**
+   * Creates an empty report whose violations name their level by the given property, like
+   * "severity" or "priority".
+   */
+  public ViolationReport(String levelName) {
+    this.levelName = levelName;
+  }
+
+  public String getLevelName() {
+    return levelName;
+  }
+
+  public void addFile(String file) {
+    if (fileCount == fileNames.length) {
+      fileNames = Arrays.copyOf(fileNames, fileCount * 2);
+      fileStarts = Arrays.copyOf(fileStarts, fileCount * 2 + 1);
+    }
+    fileNames[fileCount++] = intern(file);
+    fileStarts[fileCount] = size;
+    fileIndex = null;
+  }
+
+  /**
+   * Adds a violation to the file added last. Any of level, rule, message and context may be null,
+   * the line may be {@link #NO_LINE}.
+   */
+  public void add(int line, String level, String rule, String message, String context) {
+    add(line, false, level, rule, message, context);
+  }
+
+  /**
+   * Adds a file with the violations of a file of another report.
+   */
+  public void addFile(String file, ViolationReport from, int fromFile) {
+    addFile(file);
+    for (int i = from.getStart(fromFile); i < from.getEnd(fromFile); i++) {
+      add(from.lines[i], (from.flags[i] & NUMERIC_LINE) != 0, from.getLevel(i), from.getRule(i),
+          from.getMessage(i), from.getContext(i));
+    }
+  }
+
+  /**
+   * Adds a file with violations given as json, as kept in the violation cache. Returns false, and
+   * adds nothing, if the violations do not fit this report.
+   */
+  public boolean addFile(String file, JsonArray violations) {
+    for (final JsonElement violation : violations) {
+      if (!fits(violation)) {
+        return false;
+      }
+    }
+
+    addFile(file);
+    for (final JsonElement element : violations) {
+      final JsonObject violation = element.getAsJsonObject();
+      final JsonElement line = violation.get(LINE);
+      add(line == null ? NO_LINE : line.getAsInt(), line != null && line.getAsJsonPrimitive().isNumber(),
+          getString(violation, levelName), getString(violation, RULE), getString(violation, MESSAGE),
+          getString(violation, CONTEXT));
+    }
+    return true;
+  }
+
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  public String getFile(int file) {
+    return strings.get(fileNames[file]);
+  }
+
+  /**
+   * Returns the position of the file, or -1 if the report does not contain it.
+   */
+  public int indexOf(String file) {
+    if (fileIndex == null) {
+      fileIndex = new HashMap<>();
+      for (int i = 0; i < fileCount; i++) {
+        fileIndex.put(getFile(i), i);
+      }
+    }
+    final Integer index = fileIndex.get(file);
+    return index == null ? NONE : index;
+  }
+
+  public int getStart(int file) {
+    return fileStarts[file];
+  }
+
+  public int getEnd(int file) {
+    return fileStarts[file + 1];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean hasLine(int violation) {
+    return lines[violation] != NO_LINE;
+  }
+
+  // lines read from json as numbers are written back as numbers, all others as strings
+  public boolean isNumericLine(int violation) {
+    return (flags[violation] & NUMERIC_LINE) != 0;
+  }
+
+  public int getLine(int violation) {
+    return lines[violation];
+  }
+
+  public String getLevel(int violation) {
+    return levelIds[violation] == NONE ? null : levels.get(levelIds[violation]);
+  }
+
+  public String getRule(int violation) {
+    return rules[violation] == NONE ? null : strings.get(rules[violation]);
+  }
+
+  public String getMessage(int violation) {
+    return messages[violation] == NONE ? null : strings.get(messages[violation]);
+  }
+
+  public String getContext(int violation) {
+    return (flags[violation] & HAS_CONTEXT) == 0 ? null : String.format("%08x", contexts[violation]);
+  }
+
+  /**
+   * Tells whether two violations, of this or another report, have the same properties.
+   */
+  public boolean equals(int violation, ViolationReport other, int otherViolation) {
+    return lines[violation] == other.lines[otherViolation] && flags[violation] == other.flags[otherViolation]
+        && contexts[violation] == other.contexts[otherViolation]
+        && equal(getLevel(violation), other.getLevel(otherViolation))
+        && equal(getRule(violation), other.getRule(otherViolation))
+        && equal(getMessage(violation), other.getMessage(otherViolation));
+  }
+
+  public JsonObject getViolation(int violation) {
+    final JsonObject object = new JsonObject();
+    if (lines[violation] != NO_LINE) {
+      object.add(LINE, (flags[violation] & NUMERIC_LINE) != 0
+          ? new JsonPrimitive(lines[violation]) : new JsonPrimitive(String.valueOf(lines[violation])));
+    }
+    addIfPresent(object, levelName, getLevel(violation));
+    addIfPresent(object, RULE, getRule(violation));
+    addIfPresent(object, MESSAGE, getMessage(violation));
+    addIfPresent(object, CONTEXT, getContext(violation));
+    return object;
+  }
+
+  public JsonArray getViolations(int file) {
+    final JsonArray violations = new JsonArray();
+    for (int i = getStart(file); i < getEnd(file); i++) {
+      violations.add(getViolation(i));
+    }
+    return violations;
+  }
+
+  /**
+   * Builds the report and metrics json the tools have always returned.
+   */
+  public JsonObject toJson() {
+    final JsonObject report = new JsonObject();
+    for (int file = 0; file < fileCount; file++) {
+      report.add(getFile(file), getViolations(file));
+    }
+
+    final JsonObject data = new JsonObject();
+    data.add(REPORT, report);
+    data.add(METRICS, getMetrics());
+    return data;
+  }
+
+  public JsonObject getMetrics() {
+    final JsonObject metrics = new JsonObject();
+    metrics.addProperty(ERRORS, size);
+    return metrics;
+  }
+
+  /**
+   * Writes the same json as {@link #toJson()} without building it in memory first.
+   */
+  public void write(JsonWriter out) throws IOException {
+    out.beginObject();
+    out.name(REPORT).beginObject();
+    for (int file = 0; file < fileCount; file++) {
+      out.name(getFile(file));
+      writeViolations(out, file);
+    }
+    out.endObject();
+    out.name(METRICS).beginObject().name(ERRORS).value(size).endObject();
+    out.endObject();
+  }
+
+  public void writeViolations(JsonWriter out, int file) throws IOException {
+    out.beginArray();
+    for (int i = getStart(file); i < getEnd(file); i++) {
+      out.beginObject();
+      if (lines[i] != NO_LINE) {
+        out.name(LINE);
+        if ((flags[i] & NUMERIC_LINE) != 0) {
+          out.value(lines[i]);
+        } else {
+          out.value(String.valueOf(lines[i]));
+        }
+      }
+      writeIfPresent(out, levelName, getLevel(i));
+      writeIfPresent(out, RULE, getRule(i));
+      writeIfPresent(out, MESSAGE, getMessage(i));
+      writeIfPresent(out, CONTEXT, getContext(i));
+      out.endObject();
+    }
+    out.endArray();
+  }
+
+  @Override
+  public String toString() {
+    final StringWriter json = new StringWriter();
+    try {
+      write(new JsonWriter(json));
+    } catch (final IOException ioe) {
+      throw new IllegalStateException(ioe);
+    }
+    return json.toString();
+  }
+
+  /**
+   * Reads the report and metrics json of a tool, or returns null if its violations have properties
+   * this model does not hold.
+   */
+  public static ViolationReport fromJson(JsonObject data) {
+    final JsonElement files = data == null ? null : data.get(REPORT);
+    if (files == null || !files.isJsonObject()) {
+      return null;
+    }
+
+    String levelName = null;
+    for (final Map.Entry<String, JsonElement> file : files.getAsJsonObject().entrySet()) {
+      if (!file.getValue().isJsonArray()) {
+        return null;
+      }
+      for (final JsonElement violation : file.getValue().getAsJsonArray()) {
+        if (!violation.isJsonObject()) {
+          return null;
+        }
+        for (final String key : violation.getAsJsonObject().keySet()) {
+          if (!key.equals(LINE) && !key.equals(RULE) && !key.equals(MESSAGE) && !key.equals(CONTEXT)) {
+            if (levelName != null && !levelName.equals(key)) {
+              return null;
+            }
+            levelName = key;
+          }
+        }
+      }
+    }
+
+    final ViolationReport report = new ViolationReport(levelName == null ? "severity" : levelName);
+    for (final Map.Entry<String, JsonElement> file : files.getAsJsonObject().entrySet()) {
+      if (!report.addFile(file.getKey(), file.getValue().getAsJsonArray())) {
+        return null;
+      }
+    }
+    return report;
+  }
+
+  private void add(int line, boolean numericLine, String level, String rule, String message, String context) {
+    if (size == lines.length) {
+      final int capacity = size * 2;
+      lines = Arrays.copyOf(lines, capacity);
+      levelIds = Arrays.copyOf(levelIds, capacity);
+      rules = Arrays.copyOf(rules, capacity);
+      messages = Arrays.copyOf(messages, capacity);
+      contexts = Arrays.copyOf(contexts, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+
+    lines[size] = line;
+    levelIds[size] = getLevelId(level);
+    rules[size] = rule == null ? NONE : intern(rule);
+    messages[size] = message == null ? NONE : intern(message);
+    contexts[size] = context == null ? 0 : Integer.parseUnsignedInt(context, 16);
+    flags[size] = (byte) ((numericLine ? NUMERIC_LINE : 0) | (context == null ? 0 : HAS_CONTEXT));
+    size++;
+    fileStarts[fileCount] = size;
+  }
+
+  private byte getLevelId(String level) {
+    if (level == null) {
+      return NONE;
+    }
+    int id = levels.indexOf(level);
+    if (id == NONE) {
+      if (levels.size() == Byte.MAX_VALUE) {
+        throw new IllegalStateException("[ERROR] Too many distinct levels: " + level);
+      }
+      levels.add(level);
+      id = levels.size() - 1;
+    }
+    return (byte) id;
+  }
+
+  private int intern(String string) {
+    final Integer id = ids.get(string);
+    if (id != null) {
+      return id;
+    }
+    strings.add(string);
+    ids.put(string, strings.size() - 1);
+    return strings.size() - 1;
+  }
+
+  // violations are written back with properties in this order, so only that order fits
+  private boolean fits(JsonElement element) {
+    if (!element.isJsonObject()) {
+      return false;
+    }
+
+    final List<String> order = Arrays.asList(LINE, levelName, RULE, MESSAGE, CONTEXT);
+    int last = NONE;
+    for (final Map.Entry<String, JsonElement> property : element.getAsJsonObject().entrySet()) {
+      final int position = order.indexOf(property.getKey());
+      if (position <= last || !property.getValue().isJsonPrimitive()) {
+        return false;
+      }
+      last = position;
+
+      final JsonPrimitive value = property.getValue().getAsJsonPrimitive();
+      if (property.getKey().equals(LINE)) {
+        if (!isLine(value)) {
+          return false;
+        }
+      } else if (!value.isString()) {
+        return false;
+      } else if (property.getKey().equals(CONTEXT) && !value.getAsString().matches("[0-9a-f]{8}")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isLine(JsonPrimitive line) {
+    try {
+      final int value = Integer.parseInt(line.getAsString());
+      return value != NO_LINE && String.valueOf(value).equals(line.getAsString());
+    } catch (final NumberFormatException nfe) {
+      return false;
+    }
+  }
+
+  private static String getString(JsonObject object, String property) {
+    final JsonElement value = object.get(property);
+    return value == null ? null : value.getAsString();
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static void addIfPresent(JsonObject object, String property, String value) {
+    if (value != null) {
+      object.addProperty(property, value);
+    }
+  }
+
+  private static void writeIfPresent(JsonWriter out, String property, String value) throws IOException {
+    if (value != null) {
+      out.name(property).value(value);
+    }
+  }
+}
@@ -3,28 +3,47 @@
  */
 package com.philips.bootcamp.rest;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import com.philips.bootcamp.domain.FenceJob;
 import com.philips.bootcamp.domain.Project;
+import com.philips.bootcamp.service.FenceJobService;
 import com.philips.bootcamp.service.ProjectService;
+import com.philips.bootcamp.utils.FileUtils;
 
 @RestController
 public class ProjectController {
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
 
   @Autowired
   ProjectService service;
 
+  @Autowired
+  FenceJobService jobService;
+
   public void setService(ProjectService service) {
     this.service = service;
   }
 
+  public void setJobService(FenceJobService jobService) {
+    this.jobService = jobService;
+  }
+
   @RequestMapping(value = "/api/project", method = RequestMethod.GET)
   public List<Project> getProjectsList() {
     return service.findAll();
@@ -51,9 +70,15 @@ public class ProjectController {
     }
   }
 
+  @RequestMapping(value = "/api/project/import", method = RequestMethod.POST)
+  public String importProjects(@RequestBody String projects) {
+    return service.importProjects(projects);
+  }
+
   @RequestMapping(value = "/api/project/{name}", method = RequestMethod.DELETE)
   public ResponseEntity<Object> deleteProject(@PathVariable("name") String name) {
-
+    // a queued fence is dropped, a running one is interrupted and delete waits for it to stop
+    jobService.cancel(name);
     final boolean result = service.delete(name);
     ResponseEntity<Object> response = null;
     if (result) {
@@ -113,13 +138,151 @@ public class ProjectController {
     return new ResponseEntity<>(report, HttpStatus.OK);
   }
 
+  @RequestMapping(value = "/api/project/{name}/report", method = RequestMethod.GET, params = "tool")
+  public ResponseEntity<String> getProjectReport(@PathVariable("name") String name,
+      @RequestParam("tool") String tool, @RequestParam(value = "file", required = false) String file) {
+    return toResponse(name, service.getReport(name, tool, file));
+  }
+
+  @RequestMapping(value = "/api/project/{name}/history", method = RequestMethod.GET)
+  public ResponseEntity<String> getProjectHistory(@PathVariable("name") String name) {
+    return toResponse(name, service.getHistory(name));
+  }
+
+  @RequestMapping(value = "/api/project/{name}/history/{run}", method = RequestMethod.GET)
+  public ResponseEntity<String> getProjectHistoricReport(@PathVariable("name") String name,
+      @PathVariable("run") int run) {
+    return toResponse(name, service.getHistoricReport(name, run));
+  }
+
+  @RequestMapping(value = "/api/project/{name}/log", method = RequestMethod.GET)
+  public void getProjectLog(@PathVariable("name") String name,
+      @RequestParam(value = "tool", defaultValue = "maven") String tool,
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+      HttpServletResponse response) throws IOException {
+    final File log = service.getLog(name, tool);
+    if (log == null) {
+      response.sendError(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+
+    final long size = log.length();
+    final long[] bounds = getRange(range, size);
+    response.setContentType("text/plain;charset=UTF-8");
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    if (bounds == null) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+      response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+      return;
+    }
+
+    final long length = bounds[1] - bounds[0] + 1;
+    if (range != null) {
+      response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+    }
+    response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(length));
+    FileUtils.copyRange(log, bounds[0], length, response.getOutputStream());
+  }
+
+  /**
+   * Returns the first and last byte of a single "bytes=" range, the whole file when there is no
+   * range, or null when the range cannot be satisfied.
+   */
+  static long[] getRange(String range, long size) {
+    if (range == null) {
+      return size == 0 ? new long[] {0, -1} : new long[] {0, size - 1};
+    }
+
+    final Matcher matcher = RANGE.matcher(range.trim());
+    if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      return null;
+    }
+
+    long first;
+    long last;
+    if (matcher.group(1).isEmpty()) {
+      first = Math.max(0, size - Long.parseLong(matcher.group(2)));
+      last = size - 1;
+    } else {
+      first = Long.parseLong(matcher.group(1));
+      last = matcher.group(2).isEmpty() ? size - 1 : Math.min(size - 1, Long.parseLong(matcher.group(2)));
+    }
+    return first > last ? null : new long[] {first, last};
+  }
+
   @RequestMapping(value = "/api/project/{name}/fence", method = RequestMethod.GET)
-  public String fenceProject(@PathVariable("name") String name) throws Throwable {
-    return service.fenceProject(name);
+  public ResponseEntity<String> fenceProject(@PathVariable("name") String name,
+      @RequestParam(value = "sequential", defaultValue = "false") boolean sequential) {
+    if (service.find(name) == null) {
+      return new ResponseEntity<>("{\"status\":\"fail\",\"error\" : \"No project found with the name: "
+          + name + "\"}", HttpStatus.NOT_FOUND);
+    }
+
+    final FenceJob job = jobService.submit(name, sequential);
+    if (job == null) {
+      final HttpHeaders headers = new HttpHeaders();
+      headers.set(HttpHeaders.RETRY_AFTER, "30");
+      return new ResponseEntity<>("{\"status\":\"fail\",\"error\" : \"Too many fences queued, retry later\"}",
+          headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    final HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.LOCATION, "/api/job/" + job.getId());
+    return new ResponseEntity<>(job.toJson().toString(), headers, HttpStatus.ACCEPTED);
+  }
+
+  @RequestMapping(value = "/api/project/{name}/fence", method = RequestMethod.DELETE)
+  public ResponseEntity<String> cancelFence(@PathVariable("name") String name) {
+    final FenceJob job = jobService.cancel(name);
+    if (job == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(job.toJson().toString(), HttpStatus.ACCEPTED);
+  }
+
+  @RequestMapping(value = "/api/job/{id}", method = RequestMethod.GET)
+  public ResponseEntity<String> getJob(@PathVariable("id") String id) {
+    final FenceJob job = jobService.find(id);
+    if (job == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(job.toJson().toString(), HttpStatus.OK);
   }
 
   @RequestMapping(value = "/api/tool/{name}", method = RequestMethod.POST)
   public String getInstantReport(@PathVariable("name") String toolname, @RequestBody String source) {
     return service.getInstantReport(toolname, source);
   }
-}
\ No newline at end of file
+
+  @RequestMapping(value = "/api/tool/cache", method = RequestMethod.GET)
+  public String getInstantCacheStats() {
+    return service.getInstantCacheStats();
+  }
+
+  @RequestMapping(value = "/api/trash", method = RequestMethod.GET)
+  public String getTrashStats() {
+    return service.getTrashStats();
+  }
+
+  @RequestMapping(value = "/api/workspaces", method = RequestMethod.GET)
+  public String getWorkspaceStats() {
+    return service.getWorkspaceStats();
+  }
+
+  @RequestMapping(value = "/api/tool/{name}/batch", method = RequestMethod.POST)
+  public String getBatchReport(@PathVariable("name") String toolname, @RequestBody String sources) {
+    return service.getBatchReport(toolname, sources);
+  }
+
+  private static ResponseEntity<String> toResponse(String name, String body) {
+    if (body.equals("Project name required") || body.equals("No project by name: " + name)) {
+      return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+    if (body.equals("File not present") || body.startsWith("No report for")) {
+      return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
+    }
+
+    return new ResponseEntity<>(body, HttpStatus.OK);
+  }
+}
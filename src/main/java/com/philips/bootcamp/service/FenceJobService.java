@@ -0,0 +1,22 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import com.philips.bootcamp.domain.FenceJob;
+
+public interface FenceJobService {
+  /**
+   * Queues a fence of the project and returns its job, or the job already queued or running for
+   * the project. Returns null when the queue is full.
+   */
+  FenceJob submit(String name, boolean sequential);
+
+  FenceJob find(String id);
+
+  /**
+   * Cancels the queued or running fence of the project, killing its tool processes. Returns the
+   * cancelled job, or null when the project has no active job.
+   */
+  FenceJob cancel(String name);
+}
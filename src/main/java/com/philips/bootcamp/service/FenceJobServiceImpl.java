@@ -0,0 +1,168 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.philips.bootcamp.domain.FenceJob;
+
+/**
+ * Runs fences on a dedicated worker pool so request threads only submit and poll. The pool size,
+ * queue capacity and how long finished jobs stay visible are set with the fences.jobs.* system
+ * properties.
+ */
+@Service
+public class FenceJobServiceImpl implements FenceJobService {
+  public static final int WORKERS = Integer.getInteger("fences.jobs.workers", 2);
+  public static final int QUEUE_CAPACITY = Integer.getInteger("fences.jobs.queue", 16);
+  public static final long RETENTION_MILLIS = Long.getLong("fences.jobs.retentionMillis", 3600000L);
+
+  @Autowired
+  ProjectService projectService;
+
+  private final ThreadPoolExecutor executor;
+  private final Map<String, FenceJob> jobs = new ConcurrentHashMap<>();
+  private final Map<String, FenceJob> activeJobs = new ConcurrentHashMap<>();
+  final Map<FenceJob, Future<?>> runs = new ConcurrentHashMap<>();
+
+  public FenceJobServiceImpl() {
+    this(WORKERS, QUEUE_CAPACITY);
+  }
+
+  FenceJobServiceImpl(int workers, int queueCapacity) {
+    final AtomicInteger threads = new AtomicInteger();
+    executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          final Thread thread = new Thread(runnable, "fence-job-" + threads.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  public void setProjectService(ProjectService projectService) {
+    this.projectService = projectService;
+  }
+
+  @Override
+  public FenceJob submit(String name, boolean sequential) {
+    purgeFinished();
+
+    final FenceJob job = new FenceJob(name);
+    // a project is fenced by one job at a time since runs share its workspace and report files
+    final FenceJob active = activeJobs.putIfAbsent(name, job);
+    if (active != null) {
+      return active;
+    }
+
+    // the run is registered before it can start, so a fast job cannot finish before it is known
+    final FutureTask<Void> run = new FutureTask<>(() -> run(job, sequential), null);
+    jobs.put(job.getId(), job);
+    runs.put(job, run);
+    try {
+      executor.execute(run);
+    } catch (final RejectedExecutionException ree) {
+      jobs.remove(job.getId());
+      release(job);
+      return null;
+    }
+    return job;
+  }
+
+  @Override
+  public FenceJob cancel(String name) {
+    final FenceJob job = name == null ? null : activeJobs.get(name);
+    if (job == null) {
+      return null;
+    }
+
+    final Future<?> run = runs.get(job);
+    if (run != null) {
+      // a queued job never starts and leaves the queue, a running one is interrupted
+      run.cancel(true);
+      executor.remove((Runnable) run);
+    }
+    synchronized (job) {
+      if (!job.isFinished() && FenceJob.QUEUED.equals(job.getStatus())) {
+        job.finish("{\"status\":\"cancelled\",\"error\" : \"The fence was cancelled\"}",
+            FenceJob.CANCELLED);
+        release(job);
+      }
+    }
+    return job;
+  }
+
+  @Override
+  public FenceJob find(String id) {
+    return id == null ? null : jobs.get(id);
+  }
+
+  private void run(FenceJob job, boolean sequential) {
+    synchronized (job) {
+      if (job.isFinished()) {
+        return;
+      }
+      job.start();
+    }
+
+    try {
+      final String result = projectService.fenceProject(job.getProject(), sequential, job);
+      job.finish(result, getStatus(result));
+    } catch (final Throwable t) {
+      job.finish("{\"status\":\"fail\",\"error\" : \"Exception encountered while fencing the project\"}",
+          FenceJob.FAILED);
+    } finally {
+      release(job);
+    }
+  }
+
+  private void release(FenceJob job) {
+    activeJobs.remove(job.getProject(), job);
+    runs.remove(job);
+  }
+
+  private static String getStatus(String result) {
+    if (result == null) {
+      return FenceJob.FAILED;
+    }
+    try {
+      final JsonElement status = new JsonParser().parse(result).getAsJsonObject().get("status");
+      final String value = status == null ? null : status.getAsString();
+      if ("pass".equals(value)) {
+        return FenceJob.DONE;
+      }
+      if (ProjectServiceImpl.CANCELLED.equals(value)) {
+        return FenceJob.CANCELLED;
+      }
+      if (ProjectServiceImpl.TIMED_OUT.equals(value)) {
+        return FenceJob.TIMED_OUT;
+      }
+    } catch (final RuntimeException e) {
+      // anything else than a pass is a failure
+    }
+    return FenceJob.FAILED;
+  }
+
+  private void purgeFinished() {
+    final long oldest = System.currentTimeMillis() - RETENTION_MILLIS;
+    final Iterator<FenceJob> iterator = jobs.values().iterator();
+    while (iterator.hasNext()) {
+      final FenceJob job = iterator.next();
+      if (job.isFinished() && job.getFinished() < oldest) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import com.google.gson.JsonObject;
+import com.philips.bootcamp.utils.HashUtils;
+
+/**
+ * In-memory cache of instant reports, keyed by tool, settings, the fingerprint of the tool version
+ * and rules, and the hash of the source. A new tool version or changed rules give new keys, the old
+ * entries are never hit again and age out. The cache stays below a size budget by evicting the least
+ * recently used reports.
+ */
+public class InstantReportCache {
+  public static final long MAX_BYTES = Long.getLong("fences.instant.cacheBytes", 32L * 1024 * 1024);
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, String> reports = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public InstantReportCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the key of the report of the source, or null if the tool cannot tell when its reports
+   * change.
+   */
+  public static String key(String tool, JsonObject settings, String fingerprint, String source) {
+    if (fingerprint == null) {
+      return null;
+    }
+    return HashUtils.sha256(tool + "\n" + settings + "\n" + fingerprint) + ":" + HashUtils.sha256(source);
+  }
+
+  public synchronized String get(String key) {
+    final String report = reports.get(key);
+    if (report == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return report;
+  }
+
+  public synchronized void put(String key, String report) {
+    final long size = getSize(key, report);
+    if (size > maxBytes) {
+      return;
+    }
+    final String previous = reports.put(key, report);
+    if (previous != null) {
+      totalBytes -= getSize(key, previous);
+    }
+    totalBytes += size;
+
+    final Iterator<Map.Entry<String, String>> eldest = reports.entrySet().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      final Map.Entry<String, String> entry = eldest.next();
+      totalBytes -= getSize(entry.getKey(), entry.getValue());
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  public synchronized void clear() {
+    reports.clear();
+    totalBytes = 0;
+  }
+
+  public synchronized JsonObject getStats() {
+    final JsonObject stats = new JsonObject();
+    stats.addProperty("entries", reports.size());
+    stats.addProperty("bytes", totalBytes);
+    stats.addProperty("maxBytes", maxBytes);
+    stats.addProperty("hits", hits);
+    stats.addProperty("misses", misses);
+    stats.addProperty("evictions", evictions);
+    return stats;
+  }
+
+  // strings take two bytes per char, the entry overhead is left out
+  private static long getSize(String key, String report) {
+    return 2L * (key.length() + report.length());
+  }
+}
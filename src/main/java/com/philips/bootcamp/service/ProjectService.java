@@ -3,26 +3,80 @@
  */
 package com.philips.bootcamp.service;
 
+import java.io.File;
 import java.util.List;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.philips.bootcamp.domain.FenceJob;
 import com.philips.bootcamp.domain.Project;
 import com.philips.bootcamp.tools.ToolName;
 
 public interface ProjectService {
-  String fenceProject(String name) throws Throwable;
+  String fenceProject(String name, boolean sequential, FenceJob job) throws Throwable;
   List<Project> findAll();
   Project find(String name);
   String save(String project);
+
+  /**
+   * Saves a json array of projects like {@link #save(String)}, several at a time, and reports the
+   * outcome of every project in the order they were given.
+   */
+  String importProjects(String projects);
   boolean delete(String name);
 
   String updateSettings(String name, String settings);
   String getReport(String name);
   String getSettings(String name);
 
+  /**
+   * Returns the part of the last report produced by the tool, or only its violations in the file
+   * when a file name is given.
+   */
+  String getReport(String name, String tool, String fileName);
+
+  /**
+   * Lists the fenced runs of the project with their time, commit and errors per tool.
+   */
+  String getHistory(String name);
+
+  /**
+   * Returns the report of the project as it was after the given run.
+   */
+  String getHistoricReport(String name, int run);
+
+  /**
+   * Returns the log the tool wrote during the last fence of the project, or null if there is none.
+   */
+  File getLog(String name, String tool);
+
   String getInstantReport(String toolname, String source);
 
+  /**
+   * Analyzes a json object mapping file names to sources and reports all of them in one report.
+   */
+  String getBatchReport(String toolname, String sources);
+
+  /**
+   * Reports the size and the hits, misses and evictions of the instant report cache.
+   */
+  String getInstantCacheStats();
+
+  /**
+   * Reports how many deleted folders wait to be purged and how many bytes purging reclaimed.
+   */
+  String getTrashStats();
+
+  /**
+   * Reports the disk space the project workspaces take, their budget and how many were evicted
+   * and checked out again.
+   */
+  String getWorkspaceStats();
+
+  default String fenceProject(String name) throws Throwable {
+    return fenceProject(name, false, null);
+  }
+
   default String getTools() {
     final JsonParser parser = new JsonParser();
     final JsonObject tools = new JsonObject();
@@ -4,36 +4,117 @@
 package com.philips.bootcamp.service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
 import com.philips.bootcamp.dal.ProjectDAO;
 import com.philips.bootcamp.domain.Constants;
+import com.philips.bootcamp.domain.FenceJob;
 import com.philips.bootcamp.domain.Project;
 import com.philips.bootcamp.domain.Tool;
+import com.philips.bootcamp.domain.ToolTimeoutException;
+import com.philips.bootcamp.domain.ViolationReport;
+import com.philips.bootcamp.tools.Maven;
 import com.philips.bootcamp.tools.ToolName;
+import com.philips.bootcamp.utils.BinaryReport;
 import com.philips.bootcamp.utils.FileUtils;
+import com.philips.bootcamp.utils.GitUtils;
+import com.philips.bootcamp.utils.ReportHistory;
+import com.philips.bootcamp.utils.ReportUtils;
 import com.philips.bootcamp.utils.StringUtils;
-import com.philips.bootcamp.utils.TerminalUtils;
+import com.philips.bootcamp.utils.Trash;
 
 @Service
 public class ProjectServiceImpl implements ProjectService {
 
   public static final String SETTINGSFILE = "settings.json";
   public static final String REPORTFILE = "report.json";
+  public static final String BINARY_REPORTFILE = "report.bin";
+  public static final String HISTORY_DIRECTORY = "history";
+  public static final String STATEFILE = "fence.json";
+  public static final String WORKSPACEFILE = "workspace.json";
+  static final String INSTANT_FILE = "Test.java";
+  public static final int MAX_BATCH_FILES = Integer.getInteger("fences.batch.maxFiles", 1000);
+  public static final int MAX_IMPORT_PROJECTS = Integer.getInteger("fences.import.maxProjects", 200);
+  public static final int IMPORT_THREADS = Integer.getInteger("fences.import.threads", 4);
+  static final String COMMIT = "commit";
+  static final String SETTINGS = "settings";
+  public static final int TOOL_THREADS = Runtime.getRuntime().availableProcessors();
+  public static final long FENCE_TIMEOUT_MILLIS = Long.getLong("fences.fence.timeoutMillis", 3600000L);
+  public static final long TOOL_TIMEOUT_MILLIS = Long.getLong("fences.tool.timeoutMillis", 1800000L);
+  public static final String CANCELLED = "cancelled";
+  public static final String TIMED_OUT = "timedOut";
+  public static final String FAILED = "fail";
+  static final String STATUS = "status";
+  private static final Gson GSON = new Gson();
 
   @Autowired
   ProjectDAO projectDAO;
 
   File parent = Constants.sourceDirectory;
 
+  File mirrors = Constants.mirrorDirectory;
+
+  ExecutorService toolExecutor = Executors.newFixedThreadPool(TOOL_THREADS, runnable -> {
+    final Thread thread = new Thread(runnable, "fence-tool");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // one history per project, its methods are serialized on it
+  private final Map<String, ReportHistory> histories = new ConcurrentHashMap<>();
+
+  // imports clone on threads of their own, so a slow repository holds up one thread at most
+  ExecutorService importExecutor = Executors.newFixedThreadPool(IMPORT_THREADS, runnable -> {
+    final Thread thread = new Thread(runnable, "project-import");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  WorkspaceBudget workspaces = new WorkspaceBudget(Constants.sourceDirectory, WorkspaceBudget.MAX_BYTES);
+
+  InstantReportCache instantCache = new InstantReportCache(InstantReportCache.MAX_BYTES);
+
+  // instant analyses get threads of their own so they never queue behind long fence tools
+  ExecutorService instantExecutor = Executors.newFixedThreadPool(TOOL_THREADS, runnable -> {
+    final Thread thread = new Thread(runnable, "instant-tool");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public ProjectServiceImpl() {
+    toolExecutor.execute(ProjectServiceImpl::warmUp);
+    Trash.getDefault().resume();
+  }
+
   public void setProjectDAO(ProjectDAO projectDAO) {
     this.projectDAO = projectDAO;
   }
@@ -42,6 +123,14 @@ public class ProjectServiceImpl implements ProjectService {
     this.parent = parent;
   }
 
+  public void setMirrorDirectory(File mirrors) {
+    this.mirrors = mirrors;
+  }
+
+  public void setToolExecutor(ExecutorService toolExecutor) {
+    this.toolExecutor = toolExecutor;
+  }
+
   @Override
   public List<Project> findAll() {
     return projectDAO.findAll();
@@ -92,34 +181,107 @@ public class ProjectServiceImpl implements ProjectService {
       return "Illegal property value for 'branch'";
     }
 
-    final Project projectObject = new Project();
-    final Project existing = find(projectName);
-    if (existing == null) {
-      projectObject.setName(projectName + "-" + projectBranch);
-      projectObject.setProjectCreationDate(new Date(System.currentTimeMillis()));
-      projectDAO.save(projectObject);
-    }
-
-    File projectFolder = new File(parent, projectName + "-" + projectBranch);
+    // projects are stored under their workspace, which saves of the same branch take one at a time
+    final String workspace = projectName + "-" + projectBranch;
+    final Project existing;
+    workspaces.acquire(workspace);
+    try {
+      existing = find(workspace);
+      if (existing == null) {
+        final Project projectObject = new Project();
+        projectObject.setName(workspace);
+        projectObject.setProjectCreationDate(new Date(System.currentTimeMillis()));
+        projectDAO.save(projectObject);
+      }
 
-    checkExistence(projectFolder);
+      final String checkoutResult =
+          GitUtils.checkout(projectLink, projectBranch, new File(parent, workspace), mirrors, GitUtils.CLONE_MODE);
+      if (checkoutResult != null) {
+        return checkoutResult;
+      }
 
-    projectFolder = new File(parent, projectName);
+      // kept with the reports, so the workspace can be checked out again once it was evicted
+      final JsonObject origin = new JsonObject();
+      origin.addProperty("link", projectLink);
+      origin.addProperty("branch", projectBranch);
+      final File dataFolder = new File(Constants.dataDirectory, workspace);
+      dataFolder.mkdirs();
+      FileUtils.writeFileContents(new File(dataFolder, WORKSPACEFILE), origin.toString());
 
-    final String cloneResult = cloneGitProject(projectLink);
-    if (cloneResult != null) {
-      return cloneResult;
+      workspaces.update(workspace, this::findAll);
+      checkSettings(projectJsonObject,Settings,projectName,projectBranch);
+    } finally {
+      workspaces.release(workspace);
     }
 
-    FileUtils.renameFile(projectFolder, projectName + "-" + projectBranch);
-    switchBranch(projectName + "-" + projectBranch, projectBranch);
+    return (existing == null)? "Project created" : "Project updated";
+  }
 
-    checkSettings(projectJsonObject,Settings,projectName,projectBranch);
 
+  @Override
+  public String importProjects(String projects) {
+    if (projects == null) {
+      return "{\"error\" : \"No content provided\"}";
+    }
 
-    return (existing == null)? "Project created" : "Project updated";
+    final List<JsonObject> entries = new ArrayList<>();
+    try {
+      for (final JsonElement entry : new JsonParser().parse(projects).getAsJsonArray()) {
+        entries.add(entry.getAsJsonObject());
+      }
+    } catch (JsonParseException | IllegalStateException e) {
+      return "{\"error\" : \"Content must be a json array of projects\"}";
+    }
+    if (entries.size() > MAX_IMPORT_PROJECTS) {
+      return "{\"error\" : \"No more than " + MAX_IMPORT_PROJECTS + " projects per import\"}";
+    }
+
+    // the same branch twice in one import is saved once, saves across imports wait for each other
+    final Set<String> workspaceNames = new HashSet<>();
+    final List<Future<String>> outputs = new ArrayList<>();
+    for (final JsonObject entry : entries) {
+      final String workspace = getWorkspaceName(entry);
+      if (workspace != null && !workspaceNames.add(workspace)) {
+        outputs.add(null);
+      } else {
+        outputs.add(importExecutor.submit(() -> save(entry.toString())));
+      }
+    }
+
+    final JsonArray results = new JsonArray();
+    for (int i = 0; i < entries.size(); i++) {
+      final JsonObject result = new JsonObject();
+      result.add("link", entries.get(i).get("link"));
+      result.add("branch", entries.get(i).get("branch"));
+      String message;
+      try {
+        message = outputs.get(i) == null ? "Duplicate project in import" : outputs.get(i).get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        outputs.removeIf(output -> output == null);
+        cancelAll(outputs);
+        return "{\"error\" : \"Interrupted while importing the projects\"}";
+      } catch (final ExecutionException e) {
+        message = "Exception encountered while importing the project";
+      }
+      final boolean saved = "Project created".equals(message) || "Project updated".equals(message);
+      result.addProperty("status", saved ? "pass" : "fail");
+      result.addProperty("message", message);
+      results.add(result);
+    }
+    return results.toString();
   }
 
+  // the workspace the entry would be checked out to, or null if save is going to reject it
+  private static String getWorkspaceName(JsonObject entry) {
+    final JsonElement link = entry.get("link");
+    final JsonElement branch = entry.get("branch");
+    if (link == null || branch == null || !link.isJsonPrimitive() || !branch.isJsonPrimitive()) {
+      return null;
+    }
+    final String projectName = StringUtils.getProjectNameFromHttpLink(link.getAsString());
+    return projectName == null ? null : projectName + "-" + branch.getAsString();
+  }
 
   private void checkSettings(JsonObject projectJsonObject, String settings, String projectName, String projectBranch) {
     final JsonParser parser = new JsonParser();
@@ -161,33 +323,6 @@ public class ProjectServiceImpl implements ProjectService {
 
   }
 
-  public  void checkExistence(File projectFolder) {
-    if (projectFolder.exists()) {
-      FileUtils.deleteFolder(projectFolder);
-    }
-
-  }
-
-  private String cloneGitProject(String link) {
-    final StringBuilder command = new StringBuilder();
-    command.append("\"" + new File(Constants.toolsDirectory, "action.bat").getAbsolutePath() + "\"");
-    command.append(" \"" + Constants.sourceDirectory.getAbsolutePath() + "\"");
-    command.append(" \"git clone " + link + "\"");
-    final String output = TerminalUtils.run(command.toString());
-    if (output == null) {
-      return null;
-    }
-    return output;
-  }
-
-  private void switchBranch(String project, String branch) {
-    final StringBuilder command = new StringBuilder();
-    command.append("\"" + new File(Constants.toolsDirectory, "switch.bat").getAbsolutePath() + "\"");
-    command.append(" \"" + new File(Constants.sourceDirectory, project).getAbsolutePath() + "\"");
-    command.append(" " + branch);
-    TerminalUtils.run(command.toString());
-  }
-
   private ToolName getTool(String toolname) {
     final String s= toolname.toLowerCase();
     switch(s) {
@@ -204,29 +339,86 @@ public class ProjectServiceImpl implements ProjectService {
 
   @Override
   public boolean delete(String name) {
-    final Project existing = find(name);
-    if (existing == null) {
-      return false;
-    }
+    // a save or fence in the workspace finishes before its folders are taken away
+    workspaces.acquire(name);
+    try {
+      final Project existing = find(name);
+      if (existing == null) {
+        return false;
+      }
 
-    File folder = new File(Constants.sourceDirectory, name);
-    FileUtils.deleteFolder(folder);
+      File folder = new File(Constants.sourceDirectory, name);
+      GitUtils.deleteWorkspace(folder);
+      workspaces.forget(name);
 
-    folder = new File(Constants.dataDirectory, name);
-    FileUtils.deleteFolder(folder);
+      folder = new File(Constants.dataDirectory, name);
+      histories.remove(folder.getAbsolutePath());
+      FileUtils.deleteFolder(folder);
 
-    projectDAO.delete(name);
-    return true;
+      projectDAO.delete(name);
+      return true;
+    } finally {
+      workspaces.release(name);
+    }
   }
 
   @Override
-  public String fenceProject(String name){
-    JsonObject output = null;
+  public String fenceProject(String name, boolean sequential, FenceJob job) {
     final Project project = find(name);
     if (project == null) {
       return "{\"status\":\"fail\",\"error\" : \"No project found with the name: " + name + "\"}";
     }
 
+    // sequential tools run one after the other on a thread of the fence, so their deadlines hold too
+    final ExecutorService executor = sequential ? Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "fence-tool-sequential");
+      thread.setDaemon(true);
+      return thread;
+    }) : toolExecutor;
+    workspaces.acquire(name);
+    boolean found = false;
+    try {
+      // the project may have been deleted while the fence waited for its workspace
+      if (find(name) == null) {
+        return "{\"status\":\"fail\",\"error\" : \"No project found with the name: " + name + "\"}";
+      }
+      found = true;
+      final String restoreResult = restoreWorkspace(name);
+      if (restoreResult != null) {
+        return "{\"status\":\"fail\",\"error\" : " + GSON.toJson(restoreResult) + "}";
+      }
+      return fence(project, name, executor, sequential, job);
+    } finally {
+      if (sequential) {
+        executor.shutdown();
+      }
+      if (found) {
+        workspaces.update(name, this::findAll);
+      }
+      workspaces.release(name);
+    }
+  }
+
+  // checks out the workspace of a project again if it was evicted, returns null when there is one
+  private String restoreWorkspace(String name) {
+    final File projectFolder = new File(Constants.sourceDirectory, name);
+    if (new File(projectFolder, ".git").exists()) {
+      return null;
+    }
+
+    final JsonObject origin = readJsonObject(new File(new File(Constants.dataDirectory, name), WORKSPACEFILE));
+    if (origin == null || !origin.has("link") || !origin.has("branch")) {
+      return null;
+    }
+    final String result = GitUtils.restore(origin.get("link").getAsString(), origin.get("branch").getAsString(),
+        projectFolder, mirrors, GitUtils.CLONE_MODE);
+    if (result == null) {
+      workspaces.restored();
+    }
+    return result;
+  }
+
+  private String fence(Project project, String name, ExecutorService executor, boolean sequential, FenceJob job) {
     final JsonParser parser = new JsonParser();
     JsonObject projectSettings;
 
@@ -240,48 +432,278 @@ public class ProjectServiceImpl implements ProjectService {
       return "{\"status\":\"fail\",\"error\" : \"Exception encountered while reading project settings\"}";
     }
 
-    JsonObject prevReport;
-    try {
-      final String fileContent = FileUtils.getFileContents(new File(projectDataDirectory, REPORTFILE));
-      prevReport = parser.parse(fileContent).getAsJsonObject();
-    } catch (final Exception e) {
-      prevReport = new JsonObject();
+    // only the parts of the previous report for the tools being fenced are decoded
+    final BinaryReport prevReport = openReport(projectDataDirectory);
+    final Map<String, JsonObject> prevToolReports = new LinkedHashMap<>();
+    final Map<String, ViolationReport> prevViolationReports = new LinkedHashMap<>();
+
+    JsonObject prevState = readJsonObject(new File(projectDataDirectory, STATEFILE));
+    if (prevState == null) {
+      prevState = new JsonObject();
     }
 
-    final JsonObject comparisons = new JsonObject();
+    JsonObject prevSettings = getJsonObject(prevState.get(SETTINGS));
+    if (prevSettings == null) {
+      prevSettings = new JsonObject();
+    }
+
+    // only files touched since the last fenced commit need another look
+    final String headCommit = GitUtils.getHeadCommit(projectFolder);
+    final JsonElement prevCommit = prevState.get(COMMIT);
+    final GitUtils.ChangeSet changes = headCommit == null || prevCommit == null
+        ? null : GitUtils.getChangesSince(projectFolder, prevCommit.getAsString());
+
     final JsonObject report = new JsonObject();
+    final Map<String, ViolationReport> violationReports = new LinkedHashMap<>();
+    final JsonObject effectiveSettings = new JsonObject();
+    final long fenceDeadline = System.currentTimeMillis() + FENCE_TIMEOUT_MILLIS;
+    final Map<String, Long> deadlines = new LinkedHashMap<>();
 
+    // tools are submitted in settings order and merged back in the same order
+    final Map<String, Future<?>> outputs = new LinkedHashMap<>();
     final Set<String> tools = projectSettings.keySet();
     for (final String tool : tools) {
       final JsonObject toolSettings = projectSettings.get(tool).getAsJsonObject();
+      effectiveSettings.add(tool, toolSettings.deepCopy());
       toolSettings.addProperty("project", projectFolder.getAbsolutePath());
+      toolSettings.addProperty(Maven.LOG, getLogFile(projectDataDirectory, tool).getAbsolutePath());
+      final long deadline = Math.min(fenceDeadline, System.currentTimeMillis() + getToolTimeout(tool));
+      toolSettings.addProperty(Tool.DEADLINE, deadline);
+      deadlines.put(tool, deadline);
+
+      // tools reporting violations keep them typed, their previous report is read from the columns
+      final Tool toolInstance = getTool(tool).getInstance();
+      final boolean typed = toolInstance.reportsViolations();
+      final ViolationReport prevViolationReport =
+          typed && prevReport != null ? prevReport.getViolationReport(tool) : null;
+      final JsonObject prevToolReport = !typed && prevReport != null ? getJsonObject(prevReport.get(tool)) : null;
+      prevViolationReports.put(tool, prevViolationReport);
+      prevToolReports.put(tool, prevToolReport);
+      final boolean incremental = changes != null && (prevToolReport != null || prevViolationReport != null)
+          && toolInstance.isIncremental() && effectiveSettings.get(tool).equals(prevSettings.get(tool));
+      if (incremental) {
+        toolSettings.add(ReportUtils.FILES, ReportUtils.toJsonArray(changes.getChanged()));
+      }
 
-      output = getTool(tool).getInstance().execute(toolSettings);
-      report.add(tool, output);
+      final FutureTask<?> task = typed ? new FutureTask<ViolationReport>(() -> {
+        final ViolationReport output = toolInstance.executeReport(toolSettings);
+        return incremental ? ReportUtils.merge(prevViolationReport, output, changes) : output;
+      }) : new FutureTask<JsonObject>(() -> {
+        final JsonObject output = toolInstance.execute(toolSettings);
+        return incremental ? ReportUtils.merge(prevToolReport, output, changes) : output;
+      });
+      if (!sequential) {
+        executor.execute(task);
+      }
+      outputs.put(tool, task);
+    }
 
-      final JsonElement prevToolReport = prevReport.get(tool);
+    if (job != null) {
+      job.setTotalTools(outputs.size());
+    }
 
-      if (prevToolReport != null) {
+    // every result is written out as soon as it is in, the report file and the response are
+    // streamed instead of being serialized whole at the end
+    final StringWriter response = new StringWriter();
+    final JsonObject fencedSettings = new JsonObject();
+    final File reportFile = new File(projectDataDirectory, BINARY_REPORTFILE);
+    try (BinaryReport.Writer reportWriter = new BinaryReport.Writer(reportFile)) {
+      final JsonWriter comparisons = new JsonWriter(response);
+      comparisons.beginObject().name("status").value("pass").name("report").beginObject();
+      for (final Map.Entry<String, Future<?>> entry : outputs.entrySet()) {
+        final String tool = entry.getKey();
+        final Object output;
+        try {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+          }
+          // a sequential tool starts once the one before is in, its time is counted from then
+          if (sequential) {
+            final long deadline = Math.min(fenceDeadline, System.currentTimeMillis() + getToolTimeout(tool));
+            projectSettings.get(tool).getAsJsonObject().addProperty(Tool.DEADLINE, deadline);
+            deadlines.put(tool, deadline);
+            executor.execute((FutureTask<?>) entry.getValue());
+          }
+          final long remaining = deadlines.get(tool) - System.currentTimeMillis();
+          output = entry.getValue().get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          cancelAll(outputs.values());
+          writeAbortedReport(projectDataDirectory, prevReport, CANCELLED);
+          return "{\"status\":\"" + CANCELLED + "\",\"error\" : \"The fence was cancelled\"}";
+        } catch (final TimeoutException e) {
+          cancelAll(outputs.values());
+          writeAbortedReport(projectDataDirectory, prevReport, TIMED_OUT);
+          return "{\"status\":\"" + TIMED_OUT + "\",\"error\" : \"" + tool + " did not finish in time\"}";
+        } catch (final ExecutionException | CancellationException e) {
+          cancelAll(outputs.values());
+          // tools enforcing their deadline themselves stop with a timeout of their own
+          if (e.getCause() instanceof ToolTimeoutException) {
+            writeAbortedReport(projectDataDirectory, prevReport, TIMED_OUT);
+            return "{\"status\":\"" + TIMED_OUT + "\",\"error\" : \"" + tool + " did not finish in time\"}";
+          }
+          writeAbortedReport(projectDataDirectory, prevReport, FAILED);
+          return "{\"status\":\"" + FAILED + "\",\"error\" : \"Exception encountered while running " + tool + "\"}";
+        }
+        if (output != null) {
+          fencedSettings.add(tool, effectiveSettings.get(tool));
+        }
 
-        final JsonObject comparison=getTool(tool).getInstance().compare(output, prevToolReport.getAsJsonObject());
-        comparisons.add(tool, comparison);
+        final Tool toolInstance = getTool(tool).getInstance();
+        final JsonObject comparison;
+        if (toolInstance.reportsViolations()) {
+          final ViolationReport violations = (ViolationReport) output;
+          report.add(tool, JsonNull.INSTANCE);
+          if (violations != null) {
+            violationReports.put(tool, violations);
+            reportWriter.add(tool, violations);
+          } else {
+            reportWriter.add(tool, JsonNull.INSTANCE);
+          }
+          comparison = toolInstance.compare(violations, prevViolationReports.get(tool));
+        } else {
+          final JsonElement toolReport = output == null ? JsonNull.INSTANCE : (JsonObject) output;
+          report.add(tool, toolReport);
+          reportWriter.add(tool, toolReport);
+          comparison = toolInstance.compare((JsonObject) output, prevToolReports.get(tool));
+        }
+        GSON.toJson(comparison == null ? JsonNull.INSTANCE : comparison, comparisons.name(tool));
+        if (job != null) {
+          job.toolCompleted();
+        }
+      }
+      comparisons.endObject().endObject().flush();
+      reportWriter.commit();
+    } catch (final IOException ioe) {
+      cancelAll(outputs.values());
+      return "{\"status\":\"fail\",\"error\" : \"Exception encountered while writing the report\"}";
+    }
+    try {
+      getHistory(projectDataDirectory).append(report, violationReports, headCommit);
+    } catch (final IOException ioe) {
+      // the fence itself succeeded, the run is only missing from the history
+    }
 
-      } else {
+    final JsonObject state = new JsonObject();
+    state.addProperty(COMMIT, headCommit);
+    state.add(SETTINGS, fencedSettings);
+    FileUtils.writeFileContents(new File(projectDataDirectory, STATEFILE), state.toString());
 
-        final JsonObject comparison=getTool(tool).getInstance().compare(output, null);
-        comparisons.add(tool, comparison);
-      }
+    project.setLastBuildDate(new Date(System.currentTimeMillis()));
+    projectDAO.update(project);
 
+    return response.toString();
+  }
 
+  @Override
+  public String getHistory(String name) {
+    if (name == null) {
+      return "Project name required";
+    }
+    if (find(name) == null) {
+      return "No project by name: " + name;
+    }
 
+    try {
+      return getHistory(new File(Constants.dataDirectory, name)).getRuns().toString();
+    } catch (final IOException ioe) {
+      return "File not present";
     }
+  }
 
+  @Override
+  public String getHistoricReport(String name, int run) {
+    if (name == null) {
+      return "Project name required";
+    }
+    if (find(name) == null) {
+      return "No project by name: " + name;
+    }
 
-    FileUtils.writeFileContents(new File(projectDataDirectory, REPORTFILE), report.toString());
-    project.setLastBuildDate(new Date(System.currentTimeMillis()));
-    projectDAO.update(project);
+    try {
+      final JsonObject report = getHistory(new File(Constants.dataDirectory, name)).getReport(run);
+      return report == null ? "No report for run: " + run : report.toString();
+    } catch (final IOException ioe) {
+      return "File not present";
+    }
+  }
+
+  private ReportHistory getHistory(File projectDataDirectory) {
+    return histories.computeIfAbsent(projectDataDirectory.getAbsolutePath(),
+        path -> new ReportHistory(new File(path, HISTORY_DIRECTORY)));
+  }
+
+  @Override
+  public File getLog(String name, String tool) {
+    if (name == null || tool == null || getTool(tool) == null || find(name) == null) {
+      return null;
+    }
+
+    final File log = getLogFile(new File(Constants.dataDirectory, name), tool.toLowerCase());
+    return log.isFile() ? log : null;
+  }
+
+  private File getLogFile(File projectDataDirectory, String tool) {
+    return new File(projectDataDirectory, tool + ".log");
+  }
+
+  private long getToolTimeout(String tool) {
+    return Long.getLong("fences.tool." + tool + ".timeoutMillis", TOOL_TIMEOUT_MILLIS);
+  }
+
+  // the last complete results stay in place, marked with why this run did not replace them
+  // the parts of the previous report are copied as they are stored, only the status is replaced
+  private void writeAbortedReport(File projectDataDirectory, BinaryReport prevReport, String status) {
+    try (BinaryReport.Writer writer = new BinaryReport.Writer(new File(projectDataDirectory, BINARY_REPORTFILE))) {
+      if (prevReport != null) {
+        for (final String name : prevReport.getNames()) {
+          if (!STATUS.equals(name)) {
+            writer.add(name, prevReport);
+          }
+        }
+      }
+      writer.add(STATUS, new JsonPrimitive(status));
+      writer.commit();
+    } catch (final IOException ioe) {
+      // the previous report stays as it is
+    }
+  }
+
+  // reports written as json by earlier versions are converted the first time they are read
+  private BinaryReport openReport(File projectDataDirectory) {
+    final File binary = new File(projectDataDirectory, BINARY_REPORTFILE);
+    final File json = new File(projectDataDirectory, REPORTFILE);
+    try {
+      if (!binary.exists()) {
+        final JsonObject report = readJsonObject(json);
+        if (report == null) {
+          return null;
+        }
+        BinaryReport.write(binary, report);
+        Files.deleteIfExists(json.toPath());
+      }
+      return BinaryReport.open(binary);
+    } catch (final IOException ioe) {
+      return null;
+    }
+  }
 
-    return "{\"status\":\"pass\",\"report\" : " + comparisons.toString() + "}";
+  private JsonObject readJsonObject(File file) {
+    try {
+      return new JsonParser().parse(FileUtils.getFileContents(file)).getAsJsonObject();
+    } catch (final Exception e) {
+      return null;
+    }
+  }
+
+  private JsonObject getJsonObject(JsonElement element) {
+    return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+  }
+
+  private static void cancelAll(Collection<? extends Future<?>> futures) {
+    for (final Future<?> future : futures) {
+      future.cancel(true);
+    }
   }
 
   @Override
@@ -368,7 +790,28 @@ public class ProjectServiceImpl implements ProjectService {
 
   @Override
   public String getReport(String name) {
-    return getFile(name, REPORTFILE);
+    return getReport(name, null, null);
+  }
+
+  @Override
+  public String getReport(String name, String tool, String fileName) {
+    if (name == null) {
+      return "Project name required";
+    }
+    if (find(name) == null) {
+      return "No project by name: " + name;
+    }
+
+    final BinaryReport report = openReport(new File(Constants.dataDirectory, name));
+    if (report == null) {
+      return tool == null ? getFile(name, REPORTFILE) : "File not present";
+    }
+    if (tool == null) {
+      return report.toJson().toString();
+    }
+
+    final JsonElement part = fileName == null ? report.get(tool) : report.getViolations(tool, fileName);
+    return part == null ? "No report for: " + (fileName == null ? tool : fileName) : part.toString();
   }
 
   @Override
@@ -408,13 +851,145 @@ public class ProjectServiceImpl implements ProjectService {
       return "{\"error\" : \"No such tool\"}";
     }
 
-    final File testFile = new File(Constants.sampleDirectory, "Test.java");
-    FileUtils.writeFileContents(testFile, source);
     final Tool tool = toolName.getInstance();
     final JsonObject defaultSettings = tool.getDefaultSettings();
-    defaultSettings.addProperty("project", Constants.sampleDirectory.getAbsolutePath());
-    final JsonObject report = tool.execute(defaultSettings);
+    final String key = InstantReportCache.key(tool.getName(), defaultSettings,
+        tool.getFingerprint(defaultSettings), source);
+    final String cached = key == null ? null : instantCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+
+    final JsonObject report = tool.canAnalyzeSource()
+        ? tool.analyze(INSTANT_FILE, source, defaultSettings) : runInSandbox(tool, defaultSettings, source);
+    if (report == null) {
+      return "{\"error\" : \"Exception encountered while running the tool\"}";
+    }
+    report.addProperty("error", "none");
+
+    final String response = report.toString();
+    if (key != null) {
+      instantCache.put(key, response);
+    }
+    return response;
+  }
+
+  @Override
+  public String getInstantCacheStats() {
+    return instantCache.getStats().toString();
+  }
+
+  @Override
+  public String getTrashStats() {
+    return Trash.getDefault().getStats().toString();
+  }
+
+  @Override
+  public String getWorkspaceStats() {
+    return workspaces.getStats().toString();
+  }
+
+  @Override
+  public String getBatchReport(String toolname, String sources) {
+    if (toolname == null) {
+      return "{\"error\" : \"Invalid toolname\"}";
+    }
+    if (sources == null) {
+      return "{\"error\" : \"No content provided\"}";
+    }
+
+    final ToolName toolName = getTool(toolname);
+    if (toolName == null) {
+      return "{\"error\" : \"No such tool\"}";
+    }
+    final Tool tool = toolName.getInstance();
+    if (!tool.canAnalyzeSource()) {
+      return "{\"error\" : \"Tool cannot analyze sources in a batch\"}";
+    }
+
+    final Map<String, String> files = new LinkedHashMap<>();
+    try {
+      for (final Map.Entry<String, JsonElement> entry : new JsonParser().parse(sources).getAsJsonObject().entrySet()) {
+        files.put(entry.getKey(), entry.getValue().getAsString());
+      }
+    } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+      return "{\"error\" : \"Content must be a json object of file names to sources\"}";
+    }
+    if (files.size() > MAX_BATCH_FILES) {
+      return "{\"error\" : \"No more than " + MAX_BATCH_FILES + " files per batch\"}";
+    }
+
+    // one slice per core, each analyzed in a single pass of its own engine instance
+    final int noOfSlices = Math.max(1, Math.min(TOOL_THREADS, files.size()));
+    final List<Map<String, String>> slices = new ArrayList<>();
+    for (int i = 0; i < noOfSlices; i++) {
+      slices.add(new LinkedHashMap<>());
+    }
+    int index = 0;
+    for (final Map.Entry<String, String> file : files.entrySet()) {
+      slices.get(index++ % noOfSlices).put(file.getKey(), file.getValue());
+    }
+
+    final List<Future<JsonObject>> outputs = new ArrayList<>();
+    for (final Map<String, String> slice : slices) {
+      outputs.add(instantExecutor.submit(() -> tool.analyze(slice, tool.getDefaultSettings())));
+    }
+
+    final List<JsonObject> reports = new ArrayList<>();
+    for (final Future<JsonObject> output : outputs) {
+      try {
+        reports.add(output.get());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelAll(outputs);
+        return "{\"error\" : \"Interrupted while running the tool\"}";
+      } catch (final ExecutionException e) {
+        cancelAll(outputs);
+        return "{\"error\" : \"Exception encountered while running the tool\"}";
+      }
+    }
+
+    final JsonObject report = ReportUtils.combine(reports);
+    if (report == null) {
+      return "{\"error\" : \"Exception encountered while running the tool\"}";
+    }
     report.addProperty("error", "none");
     return report.toString();
   }
+
+  // every run gets its own sandbox so concurrent requests never see each other's source
+  private JsonObject runInSandbox(Tool tool, JsonObject settings, String source) {
+    final File runDirectory;
+    try {
+      runDirectory = Files.createTempDirectory(Constants.sampleDirectory.toPath(), "run").toFile();
+    } catch (final IOException ioe) {
+      return null;
+    }
+
+    try {
+      FileUtils.writeFileContents(new File(runDirectory, INSTANT_FILE), source);
+      settings.addProperty("project", runDirectory.getAbsolutePath());
+      return tool.execute(settings);
+    } finally {
+      deleteQuietly(runDirectory);
+    }
+  }
+
+  // the first instant report would otherwise pay for loading the configurations and rulesets
+  private static void warmUp() {
+    for (final ToolName toolName : ToolName.values()) {
+      final Tool tool = toolName.getInstance();
+      if (tool.canAnalyzeSource()) {
+        tool.analyze(INSTANT_FILE, "class Test {\n}\n", tool.getDefaultSettings());
+      }
+    }
+  }
+
+  private void deleteQuietly(File directory) {
+    try {
+      FileUtils.deleteDirectoryRecursion(directory.toPath());
+    } catch (final IOException ioe) {
+      // a leftover sandbox only costs disk space, the report is already built
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import com.google.gson.JsonObject;
+import com.philips.bootcamp.domain.Project;
+import com.philips.bootcamp.utils.GitUtils;
+
+/**
+ * Keeps the checked out workspaces of the projects below a disk budget. When they take more, the
+ * workspaces of the projects fenced least recently are deleted; their settings and reports stay and
+ * the workspace is checked out again on the next fence. Workspaces in use are never evicted.
+ */
+public class WorkspaceBudget {
+  public static final long MAX_BYTES = Long.getLong("fences.workspaces.maxBytes", 50L * 1024 * 1024 * 1024);
+
+  private final File directory;
+  private final long maxBytes;
+  private final Map<String, Long> sizes = new HashMap<>();
+  private final Map<String, Integer> inUse = new HashMap<>();
+  private final Map<String, ReentrantLock> locks = new HashMap<>();
+  private final Set<String> evicting = new HashSet<>();
+  private final Set<String> changed = new LinkedHashSet<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final ExecutorService evictor = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "workspace-evictor");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private long evictions;
+  private long restores;
+
+  public WorkspaceBudget(File directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Takes the workspace for the caller alone, so saves and fences never check out or build in it
+   * at the same time. Waits for the workspace to be released by others, or deleted if it is being
+   * evicted. Every acquire needs a release on the same thread.
+   */
+  public void acquire(String name) {
+    final ReentrantLock lock;
+    synchronized (this) {
+      boolean interrupted = false;
+      while (evicting.contains(name)) {
+        try {
+          wait();
+        } catch (final InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      // counted in use while waiting, so it is not evicted under the one holding it
+      inUse.merge(name, 1, Integer::sum);
+      lock = locks.computeIfAbsent(name, key -> new ReentrantLock());
+    }
+    lock.lock();
+  }
+
+  public synchronized void release(String name) {
+    final ReentrantLock lock = locks.get(name);
+    if (lock != null && lock.isHeldByCurrentThread()) {
+      lock.unlock();
+    }
+    if (inUse.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1) == null) {
+      locks.remove(name);
+    }
+  }
+
+  public synchronized void restored() {
+    restores++;
+  }
+
+  public synchronized void forget(String name) {
+    sizes.remove(name);
+    changed.remove(name);
+  }
+
+  /**
+   * Measures the workspace again, after it was checked out or a fence left build output in it.
+   */
+  public void measure(String name) {
+    final long size = getSize(new File(directory, name));
+    synchronized (this) {
+      // deleted workspaces are not kept, an evicted one is measured again once it is restored
+      if (size == 0) {
+        sizes.remove(name);
+      } else {
+        sizes.put(name, size);
+      }
+    }
+  }
+
+  /**
+   * Measures the changed workspace and evicts what no longer fits on a thread of the budget, so
+   * the caller does not wait for trees to be walked or deleted. Changes coming in while a pass is
+   * pending are taken along by it.
+   */
+  public void update(String name, Supplier<List<Project>> projects) {
+    synchronized (this) {
+      changed.add(name);
+    }
+    if (scheduled.compareAndSet(false, true)) {
+      evictor.execute(() -> {
+        scheduled.set(false);
+        final List<String> names;
+        synchronized (this) {
+          names = new ArrayList<>(changed);
+          changed.clear();
+        }
+        for (final String changedName : names) {
+          measure(changedName);
+        }
+        evict(projects.get());
+      });
+    }
+  }
+
+  /**
+   * Evicts the workspaces of the projects with the oldest build dates until the rest fits the budget,
+   * and returns the names of the evicted ones. Projects never built count from their creation. The
+   * victims are chosen under the lock and deleted outside of it; until then they cannot be acquired.
+   */
+  public List<String> evict(List<Project> projects) {
+    for (final Project project : projects) {
+      final boolean known;
+      synchronized (this) {
+        known = sizes.containsKey(project.getName());
+      }
+      if (!known) {
+        measure(project.getName());
+      }
+    }
+
+    final List<Project> candidates = new ArrayList<>(projects);
+    candidates.sort(Comparator.comparingLong(WorkspaceBudget::getLastUse));
+
+    final List<String> victims = new ArrayList<>();
+    synchronized (this) {
+      long totalBytes = getTotalBytes();
+      for (final Project project : candidates) {
+        if (totalBytes <= maxBytes) {
+          break;
+        }
+        final String name = project.getName();
+        final Long size = sizes.get(name);
+        if (size == null || size == 0 || inUse.containsKey(name) || !evicting.add(name)) {
+          continue;
+        }
+        totalBytes -= size;
+        victims.add(name);
+      }
+    }
+
+    final List<String> evicted = new ArrayList<>();
+    for (final String name : victims) {
+      try {
+        GitUtils.deleteWorkspace(new File(directory, name));
+        evicted.add(name);
+      } finally {
+        synchronized (this) {
+          evicting.remove(name);
+          if (evicted.contains(name)) {
+            sizes.remove(name);
+            evictions++;
+          }
+          notifyAll();
+        }
+      }
+    }
+    return evicted;
+  }
+
+  public synchronized JsonObject getStats() {
+    long workspaces = 0;
+    for (final long size : sizes.values()) {
+      workspaces += size > 0 ? 1 : 0;
+    }
+
+    final JsonObject stats = new JsonObject();
+    stats.addProperty("workspaces", workspaces);
+    stats.addProperty("bytes", getTotalBytes());
+    stats.addProperty("maxBytes", maxBytes);
+    stats.addProperty("evictions", evictions);
+    stats.addProperty("restores", restores);
+    return stats;
+  }
+
+  private long getTotalBytes() {
+    long totalBytes = 0;
+    for (final long size : sizes.values()) {
+      totalBytes += size;
+    }
+    return totalBytes;
+  }
+
+  private static long getLastUse(Project project) {
+    if (project.getLastBuildDate() != null) {
+      return project.getLastBuildDate().getTime();
+    }
+    return project.getProjectCreationDate() == null ? 0 : project.getProjectCreationDate().getTime();
+  }
+
+  // the bytes of the files in the tree, 0 if there is no workspace
+  private static long getSize(File workspace) {
+    if (!workspace.isDirectory()) {
+      return 0;
+    }
+
+    final long[] size = new long[1];
+    try {
+      Files.walkFileTree(workspace.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+          size[0] += attributes.size();
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (final IOException ioe) {
+      // what could be walked is the best estimate there is
+    }
+    return size[0];
+  }
+}
@@ -5,24 +5,22 @@ package com.philips.bootcamp.tools;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
 import com.philips.bootcamp.domain.Tool;
+import com.philips.bootcamp.domain.ViolationReport;
 import com.philips.bootcamp.utils.FileUtils;
-import com.philips.bootcamp.utils.TerminalUtils;
+import com.philips.bootcamp.utils.ReportUtils;
+import com.philips.bootcamp.utils.XmlUtils;
 
 public class Checkstyle implements Tool {
   static final String STYLEGUIDE = "styleguide";
@@ -34,97 +32,111 @@ public class Checkstyle implements Tool {
   static final String ERRORS_NOW = "errorsNow";
   static final String PERCENTAGE_CHANGE = "percentageChange";
 
+  private final CheckstyleEngine engine = new CheckstyleEngine();
 
 
   public JsonObject parseXml(String out) {
-
-
     if (out == null) {
       return null;
     }
+    return parseXmlStream(new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public JsonObject parseXmlStream(InputStream is) {
+    if (is == null) {
+      return null;
+    }
 
     int noOfErrors = 0;
     final JsonObject report = new JsonObject();
     final JsonObject metrics = new JsonObject();
 
+    XMLStreamReader reader = null;
     try {
-      final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-
-
-      dbFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-
-
-
-      final DocumentBuilder builder = dbFactory.newDocumentBuilder();
-      final Document document = builder.parse(new ByteArrayInputStream(out.getBytes()));
-      document.getDocumentElement().normalize();
-      final NodeList files = document.getElementsByTagName("file");
-
-      noOfErrors = document.getElementsByTagName("error").getLength();
-      metrics.addProperty(ERRORS, noOfErrors);
-
-      for (int index = 0; index < files.getLength(); index++) {
-
-        final JsonArray array = new JsonArray();
-
-        final Node file = files.item(index);
-        final NamedNodeMap attributes = file.getAttributes();
-        final String fileLocation = attributes.getNamedItem("name").getNodeValue();
+      reader = XmlUtils.newSecureInputFactory().createXMLStreamReader(is);
 
+      JsonArray array = null;
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
 
-        final NodeList errors = ((Element) file).getElementsByTagName("error");
-        final int errorLength = errors.getLength();
+        final String element = reader.getLocalName();
+        if (element.equals("file")) {
+          array = new JsonArray();
+          report.add(reader.getAttributeValue(null, "name"), array);
+        } else if (element.equals("error")) {
+          noOfErrors++;
+          if (array == null) {
+            continue;
+          }
 
-        for (int eindex = 0; eindex < errorLength; eindex++) {
           final JsonObject object = new JsonObject();
-
-          final Node error = errors.item(eindex);
-          final NamedNodeMap errorDetails = error.getAttributes();
-          object.addProperty("line", errorDetails.getNamedItem("line").getNodeValue());
-          object.addProperty("severity", errorDetails.getNamedItem("severity").getNodeValue());
-          object.addProperty("message", errorDetails.getNamedItem("message").getNodeValue());
-
+          object.addProperty("line", reader.getAttributeValue(null, "line"));
+          object.addProperty("severity", reader.getAttributeValue(null, "severity"));
+          object.addProperty("message", reader.getAttributeValue(null, "message"));
           array.add(object);
         }
-
-        report.add(fileLocation, array);
       }
-
-    } catch (ParserConfigurationException | SAXException | IOException e) {
+    } catch (final XMLStreamException e) {
       return null;
+    } finally {
+      closeQuietly(reader);
     }
 
+    metrics.addProperty(ERRORS, noOfErrors);
+
     final JsonObject data = new JsonObject();
     data.add(REPORT, report);
     data.add(METRICS, metrics);
     return data;
   }
 
+  static void closeQuietly(XMLStreamReader reader) {
+    if (reader == null) {
+      return;
+    }
+    try {
+      reader.close();
+    } catch (final XMLStreamException e) {
+      // nothing left to read
+    }
+  }
+
   @Override
   public JsonObject execute(JsonObject settings) {
+    final ViolationReport report = executeReport(settings);
+    return report == null ? null : report.toJson();
+  }
 
+  @Override
+  public boolean reportsViolations() {
+    return true;
+  }
 
-    final StringBuilder command = new StringBuilder("java -jar");
-    command.append(" \"" + new File(Constants.toolsDirectory, "checkstyle-8.23-all.jar").getAbsolutePath() + "\"");
-    command.append(" -c " + settings.get(STYLEGUIDE).getAsString() + ".xml");
-
-    command.append(" \"" + settings.get("project").getAsString() + "\"");
-
-    command.append(" -f xml");
-
-
-    command.append(" -o \"" + Constants.output.getAbsolutePath() + "\"");
-
-    command.append(" -e target");
+  @Override
+  public ViolationReport executeReport(JsonObject settings) {
+    final File project = new File(settings.get("project").getAsString());
+    final boolean excludeTestFiles = settings.get(EXCLUDE_TEST_FILES).getAsString().equals("yes");
 
-    if (settings.get(EXCLUDE_TEST_FILES).getAsString().equals("yes")) {
-      command.append(" -e src/test");
-    }
+    return engine.audit(project, settings.get(STYLEGUIDE).getAsString(), excludeTestFiles,
+        ReportUtils.getFiles(settings));
+  }
 
+  @Override
+  public boolean canAnalyzeSource() {
+    return true;
+  }
 
-    TerminalUtils.run(command.toString());
+  @Override
+  public JsonObject analyze(Map<String, String> sources, JsonObject settings) {
+    final ViolationReport report = engine.audit(sources, settings.get(STYLEGUIDE).getAsString());
+    return report == null ? null : report.toJson();
+  }
 
-    return parseXml(FileUtils.getFileContents(Constants.output));
+  @Override
+  public String getFingerprint(JsonObject settings) {
+    return engine.getFingerprint(settings.get(STYLEGUIDE).getAsString());
   }
 
   @Override
@@ -167,6 +179,11 @@ public class Checkstyle implements Tool {
     return true;
   }
 
+  @Override
+  public boolean isIncremental() {
+    return true;
+  }
+
   @Override
   public JsonObject getDefaultSettings() {
     final JsonObject defaults = new JsonObject();
@@ -177,15 +194,23 @@ public class Checkstyle implements Tool {
 
   @Override
   public JsonObject compare(JsonObject futureReport, JsonObject pastReport) {
+    return compare(getErrors(futureReport), getErrors(pastReport),
+        () -> ReportUtils.diff(futureReport, pastReport));
+  }
+
+  @Override
+  public JsonObject compare(ViolationReport futureReport, ViolationReport pastReport) {
+    return compare(futureReport == null ? null : futureReport.size(),
+        pastReport == null ? null : pastReport.size(), () -> ReportUtils.diff(futureReport, pastReport));
+  }
+
+  private JsonObject compare(Integer errorsNow, Integer errorsThen, Supplier<JsonObject> violations) {
     final JsonObject comparison = new JsonObject();
     double percentage = 0.0;
 
     final DecimalFormat df = new DecimalFormat("#.###");
 
-    if (pastReport != null && futureReport != null) {
-      final int errorsThen = pastReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-      final int errorsNow = futureReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-
+    if (errorsThen != null && errorsNow != null) {
       if (errorsThen != -1) {
         percentage = (errorsThen - errorsNow) * 1f / (errorsThen * 1f);
       }
@@ -193,12 +218,11 @@ public class Checkstyle implements Tool {
       comparison.addProperty(ERRORS_THEN, errorsThen);
       comparison.addProperty(ERRORS_NOW, errorsNow);
       comparison.addProperty(PERCENTAGE_CHANGE, df.format(percentage));
+      comparison.add("violations", violations.get());
 
       return comparison;
 
-    } else if (pastReport == null && futureReport != null) {
-      final int errorsNow = futureReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-
+    } else if (errorsThen == null && errorsNow != null) {
       comparison.addProperty(ERRORS_THEN, "null");
       comparison.addProperty(ERRORS_NOW, errorsNow);
       comparison.addProperty(PERCENTAGE_CHANGE, "null");
@@ -212,4 +236,8 @@ public class Checkstyle implements Tool {
       return comparison;
     }
   }
-}
\ No newline at end of file
+
+  private static Integer getErrors(JsonObject report) {
+    return report == null ? null : report.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import com.philips.bootcamp.domain.ViolationReport;
+import com.philips.bootcamp.utils.ReportUtils;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Collects the audit events of a {@link com.puppycrawl.tools.checkstyle.Checker} into a
+ * {@link ViolationReport} that holds what {@link Checkstyle#parseXml(String)} reads from an xml
+ * report, plus rule and context.
+ */
+class CheckstyleCollector implements AuditListener {
+  static final String SEVERITY = "severity";
+
+  private ViolationReport report = new ViolationReport(SEVERITY);
+  private boolean started;
+  private List<String> lines;
+  private Map<String, List<String>> sources;
+
+  void reset() {
+    reset(null);
+  }
+
+  // the lines of sources audited from memory, keyed by file name; other files are read from disk
+  void reset(Map<String, List<String>> sources) {
+    report = new ViolationReport(SEVERITY);
+    started = false;
+    this.sources = sources;
+  }
+
+  ViolationReport getData() {
+    return report;
+  }
+
+  @Override
+  public void auditStarted(AuditEvent event) {
+    // nothing to collect
+  }
+
+  @Override
+  public void auditFinished(AuditEvent event) {
+    // nothing to collect
+  }
+
+  @Override
+  public void fileStarted(AuditEvent event) {
+    started = true;
+    lines = null;
+    report.addFile(event.getFileName());
+  }
+
+  @Override
+  public void fileFinished(AuditEvent event) {
+    started = false;
+    lines = null;
+  }
+
+  @Override
+  public void addError(AuditEvent event) {
+    if (!started || event.getSeverityLevel() == SeverityLevel.IGNORE) {
+      return;
+    }
+
+    if (lines == null) {
+      lines = sources != null && sources.containsKey(event.getFileName())
+          ? sources.get(event.getFileName()) : ReportUtils.readLines(new File(event.getFileName()));
+    }
+    report.add(event.getLine(), event.getSeverityLevel().getName(),
+        event.getModuleId() != null ? event.getModuleId()
+            : event.getSourceName().substring(event.getSourceName().lastIndexOf('.') + 1),
+        event.getMessage(), ReportUtils.getContext(lines, event.getLine()));
+  }
+
+  @Override
+  public void addException(AuditEvent event, Throwable throwable) {
+    // the xml logger reports these outside of the error list as well
+  }
+}
@@ -0,0 +1,433 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import com.philips.bootcamp.domain.Constants;
+import com.philips.bootcamp.domain.ViolationReport;
+import com.philips.bootcamp.utils.FileUtils;
+import com.philips.bootcamp.utils.HashUtils;
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader.IgnoredModulesOptions;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.BeforeExecutionFileFilter;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+/**
+ * Runs checkstyle inside the service jvm. Configured checkers are expensive to build, so they are
+ * kept in a pool per styleguide and test file exclusion and handed out to one audit at a time.
+ */
+public class CheckstyleEngine {
+  public static final String VERSION =
+      String.valueOf(Checker.class.getPackage().getImplementationVersion());
+  private static final String FILE_EXTENSIONS = "fileExtensions";
+  static final long FINGERPRINT_MILLIS = 5000;
+
+  // modules whose violations depend on where a file is, or on other files as well
+  private static final Set<String> FILE_NAME_MODULES = new HashSet<>(Arrays.asList("OuterTypeFilename",
+      "PackageDeclaration", "ImportControl", "RegexpOnFilename", "SuppressionFilter", "SuppressionSingleFilter",
+      "SuppressionXpathFilter", "SuppressionXpathSingleFilter", "BeforeExecutionExclusionFileFilter"));
+  private static final Set<String> OTHER_FILE_MODULES = new HashSet<>(Arrays.asList("JavadocPackage",
+      "Translation"));
+  // modules that read the file from disk instead of the text they are handed
+  private static final Set<String> SOURCE_READING_MODULES = new HashSet<>(Arrays.asList("NewlineAtEndOfFile",
+      "UniqueProperties"));
+
+  private final Map<String, Configuration> configurations = new ConcurrentHashMap<>();
+  private final Map<String, Queue<PooledChecker>> pool = new ConcurrentHashMap<>();
+  private final Map<String, Map.Entry<String, Long>> fingerprints = new ConcurrentHashMap<>();
+
+  public ViolationReport audit(File project, String styleguide, boolean excludeTestFiles) {
+    return audit(project, styleguide, excludeTestFiles, null);
+  }
+
+  /**
+   * Audits only the given files of the project, or all of them when files is null.
+   */
+  public ViolationReport audit(File project, String styleguide, boolean excludeTestFiles, List<File> files) {
+    if (project == null) {
+      return null;
+    }
+    return audit(styleguide, excludeTestFiles, checker -> checker.audit(project, files));
+  }
+
+  /**
+   * Audits sources keyed by file name in one pass of a pooled checker. The sources are handed to
+   * its file set checks as they are, unless the styleguide has checks that read the file from disk
+   * themselves; then they are written to a directory of their own, one subdirectory per source so
+   * equal names cannot collide, which is removed again before returning.
+   */
+  public ViolationReport audit(Map<String, String> sources, String styleguide) {
+    if (sources == null) {
+      return null;
+    }
+    return audit(styleguide, false,
+        checker -> checker.readsSources ? auditOnDisk(checker, sources) : checker.audit(sources));
+  }
+
+  // hands a pooled checker of the styleguide to the audit
+  private ViolationReport audit(String styleguide, boolean excludeTestFiles,
+      Function<PooledChecker, ViolationReport> audit) {
+    if (styleguide == null) {
+      return null;
+    }
+
+    // an edited styleguide gets checkers and cache entries of its own
+    final String hash = getStyleguideHash(styleguide);
+    if (hash == null) {
+      return null;
+    }
+    final String key = styleguide + ":" + hash + ":" + excludeTestFiles;
+    final Queue<PooledChecker> checkers = pool.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+
+    PooledChecker checker = checkers.poll();
+    try {
+      if (checker == null) {
+        checker = new PooledChecker(styleguide + ":" + hash, getConfiguration(styleguide, hash), excludeTestFiles);
+      }
+      return audit.apply(checker);
+    } catch (final CheckstyleException e) {
+      return null;
+    } finally {
+      if (checker != null) {
+        checkers.offer(checker);
+      }
+    }
+  }
+
+  private static ViolationReport auditOnDisk(PooledChecker checker, Map<String, String> sources) {
+    final File directory;
+    try {
+      directory = Files.createTempDirectory(Constants.sampleDirectory.toPath(), "instant").toFile();
+    } catch (final IOException ioe) {
+      return null;
+    }
+
+    try {
+      final Map<String, String> names = new HashMap<>();
+      final List<File> files = new ArrayList<>();
+      for (final Map.Entry<String, String> source : sources.entrySet()) {
+        if (source.getKey() == null || source.getValue() == null) {
+          continue;
+        }
+        final File file = new File(new File(directory, String.valueOf(files.size())),
+            new File(source.getKey()).getName());
+        file.getParentFile().mkdir();
+        Files.write(file.toPath(), source.getValue().getBytes(StandardCharsets.UTF_8));
+        files.add(file);
+        names.put(file.getAbsolutePath(), source.getKey());
+      }
+
+      final ViolationReport audited = checker.audit(directory, files);
+      return audited == null ? null : rename(audited, names);
+    } catch (final IOException ioe) {
+      return null;
+    } finally {
+      try {
+        FileUtils.deleteDirectoryRecursion(directory.toPath());
+      } catch (final IOException ioe) {
+        // a leftover directory only costs disk space
+      }
+    }
+  }
+
+  // the report keyed by the given names instead of the paths the sources were audited under
+  private static ViolationReport rename(ViolationReport audited, Map<String, String> names) {
+    final ViolationReport report = new ViolationReport(audited.getLevelName());
+    for (int file = 0; file < audited.getFileCount(); file++) {
+      report.addFile(names.get(audited.getFile(file)), audited, file);
+    }
+    return report;
+  }
+
+  /**
+   * Identifies the checkstyle version and the contents of the styleguide, or returns null if it
+   * cannot be read. Reading the styleguide costs more than a cached report, so it is read again
+   * only after a while.
+   */
+  public String getFingerprint(String styleguide) {
+    if (styleguide == null) {
+      return null;
+    }
+    final Map.Entry<String, Long> checked = fingerprints.get(styleguide);
+    final long now = System.currentTimeMillis();
+    if (checked != null && now - checked.getValue() < FINGERPRINT_MILLIS) {
+      return checked.getKey();
+    }
+    final String hash = getStyleguideHash(styleguide);
+    if (hash == null) {
+      fingerprints.remove(styleguide);
+      return null;
+    }
+    final String fingerprint = ViolationCache.namespace("checkstyle", VERSION, styleguide + ":" + hash);
+    fingerprints.put(styleguide, new AbstractMap.SimpleImmutableEntry<>(fingerprint, now));
+    return fingerprint;
+  }
+
+  private static String getStyleguideHash(String styleguide) {
+    final File file = new File(styleguide + ".xml");
+    try (InputStream is = file.exists() ? new FileInputStream(file)
+        : Checker.class.getClassLoader().getResourceAsStream(styleguide + ".xml")) {
+      if (is == null) {
+        return null;
+      }
+      final MessageDigest digest = HashUtils.newDigest();
+      HashUtils.update(digest, is);
+      return HashUtils.toHex(digest.digest());
+    } catch (final IOException ioe) {
+      return null;
+    }
+  }
+
+  private Configuration getConfiguration(String styleguide, String hash) throws CheckstyleException {
+    final String key = styleguide + ":" + hash;
+    Configuration configuration = configurations.get(key);
+    if (configuration == null) {
+      configuration = ConfigurationLoader.loadConfiguration(styleguide + ".xml",
+          new PropertiesExpander(System.getProperties()), IgnoredModulesOptions.OMIT);
+      configurations.put(key, configuration);
+      // checkers of earlier versions of the styleguide are not handed out again
+      configurations.keySet().removeIf(other -> isOtherVersion(other, styleguide, hash));
+      pool.keySet().removeIf(other -> isOtherVersion(other, styleguide, hash));
+    }
+    return configuration;
+  }
+
+  // keys of the styleguide that belong to another version of it
+  private static boolean isOtherVersion(String key, String styleguide, String hash) {
+    if (!key.startsWith(styleguide + ":")) {
+      return false;
+    }
+    final String rest = key.substring(styleguide.length() + 1);
+    final int end = rest.indexOf(':');
+    final String keyHash = end < 0 ? rest : rest.substring(0, end);
+    return keyHash.length() == hash.length() && !keyHash.equals(hash);
+  }
+
+  private static ViolationCache.Scope getScope(Configuration configuration) {
+    final String name = getModuleName(configuration);
+    if (OTHER_FILE_MODULES.contains(name)) {
+      return ViolationCache.Scope.NONE;
+    }
+
+    ViolationCache.Scope scope = FILE_NAME_MODULES.contains(name)
+        ? ViolationCache.Scope.PATH : ViolationCache.Scope.CONTENT;
+    for (final Configuration child : configuration.getChildren()) {
+      final ViolationCache.Scope childScope = getScope(child);
+      if (childScope.compareTo(scope) > 0) {
+        scope = childScope;
+      }
+    }
+    return scope;
+  }
+
+  private static boolean readsSources(Configuration configuration) {
+    if (SOURCE_READING_MODULES.contains(getModuleName(configuration))) {
+      return true;
+    }
+    for (final Configuration child : configuration.getChildren()) {
+      if (readsSources(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // the modules are matched by name, with or without package and check suffix
+  private static String getModuleName(Configuration configuration) {
+    String name = configuration.getName();
+    name = name.substring(name.lastIndexOf('.') + 1);
+    if (name.endsWith("Check")) {
+      name = name.substring(0, name.length() - "Check".length());
+    }
+    return name;
+  }
+
+  private static List<String> getFileExtensions(Configuration configuration) throws CheckstyleException {
+    final List<String> extensions = new ArrayList<>();
+    for (final String attribute : configuration.getAttributeNames()) {
+      if (attribute.equals(FILE_EXTENSIONS)) {
+        for (final String extension : configuration.getAttribute(FILE_EXTENSIONS).split(",")) {
+          extensions.add(extension.trim());
+        }
+      }
+    }
+
+    if (extensions.isEmpty()) {
+      extensions.add("java");
+    }
+    return extensions;
+  }
+
+  /**
+   * A checker that keeps its file set checks and file filters at hand, so sources held in memory
+   * can be fed to them without files.
+   */
+  private static final class SourceChecker extends Checker {
+    private final List<FileSetCheck> fileSetChecks = new ArrayList<>();
+    private final List<BeforeExecutionFileFilter> fileFilters = new ArrayList<>();
+
+    @Override
+    public void addFileSetCheck(FileSetCheck fileSetCheck) {
+      super.addFileSetCheck(fileSetCheck);
+      fileSetChecks.add(fileSetCheck);
+    }
+
+    @Override
+    public void addBeforeExecutionFileFilter(BeforeExecutionFileFilter filter) {
+      super.addBeforeExecutionFileFilter(filter);
+      fileFilters.add(filter);
+    }
+
+    boolean accept(String fileName) {
+      for (final BeforeExecutionFileFilter filter : fileFilters) {
+        if (!filter.accept(fileName)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class PooledChecker {
+    private final SourceChecker checker = new SourceChecker();
+    private final CheckstyleCollector collector = new CheckstyleCollector();
+    private final String namespace;
+    private final ViolationCache.Scope scope;
+    private final boolean readsSources;
+    private final List<String> extensions;
+    private final boolean excludeTestFiles;
+    private String projectPath;
+
+    PooledChecker(String styleguide, Configuration configuration, boolean excludeTestFiles)
+        throws CheckstyleException {
+      this.namespace = ViolationCache.namespace("checkstyle", VERSION, styleguide);
+      this.scope = getScope(configuration);
+      this.readsSources = readsSources(configuration);
+      this.extensions = getFileExtensions(configuration);
+      this.excludeTestFiles = excludeTestFiles;
+
+      checker.setModuleClassLoader(Checker.class.getClassLoader());
+      checker.configure(configuration);
+      checker.addListener(collector);
+      // an interrupted audit skips its remaining files and is discarded
+      checker.addBeforeExecutionFileFilter(
+          fileName -> !Thread.currentThread().isInterrupted() && accept(fileName));
+    }
+
+    ViolationReport audit(File project, List<File> files) {
+      projectPath = project.getAbsolutePath();
+
+      final List<File> candidates = new ArrayList<>();
+      for (final File file : files == null
+          ? FileUtils.listFiles(project, extensions) : FileUtils.filterFiles(files, extensions)) {
+        if (accept(file.getAbsolutePath())) {
+          candidates.add(file);
+        }
+      }
+
+      final ViolationReport data = ViolationCache.getDefault().analyze(candidates, namespace, scope,
+          this::process, true, CheckstyleCollector.SEVERITY);
+      return Thread.currentThread().isInterrupted() ? null : data;
+    }
+
+    /**
+     * Passes the sources through the file set checks the way the checker passes files, each under
+     * a path of its own in a directory that does not exist, so checks looking next to a source find
+     * nothing there, and reports them under their given names.
+     */
+    ViolationReport audit(Map<String, String> sources) {
+      final File root = new File(Constants.sampleDirectory, "memory");
+      projectPath = root.getAbsolutePath();
+      final Map<String, String> names = new HashMap<>();
+      final Map<String, List<String>> lines = new HashMap<>();
+      collector.reset(lines);
+      try {
+        for (final FileSetCheck fileSetCheck : checker.fileSetChecks) {
+          fileSetCheck.beginProcessing(StandardCharsets.UTF_8.name());
+        }
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+          if (source.getKey() == null || source.getValue() == null) {
+            continue;
+          }
+          final File file =
+              new File(new File(root, String.valueOf(names.size())), new File(source.getKey()).getName());
+          final String fileName = file.getAbsolutePath();
+          names.put(fileName, source.getKey());
+          if (!FileUtils.hasExtension(file, extensions) || !checker.accept(fileName)) {
+            continue;
+          }
+
+          final List<String> sourceLines =
+              new BufferedReader(new StringReader(source.getValue())).lines().collect(Collectors.toList());
+          final FileText text = new FileText(file, sourceLines);
+          lines.put(fileName, sourceLines);
+          final SortedSet<LocalizedMessage> messages = new TreeSet<>();
+          checker.fireFileStarted(fileName);
+          for (final FileSetCheck fileSetCheck : checker.fileSetChecks) {
+            messages.addAll(fileSetCheck.process(file, text));
+          }
+          checker.fireErrors(fileName, messages);
+          checker.fireFileFinished(fileName);
+        }
+        for (final FileSetCheck fileSetCheck : checker.fileSetChecks) {
+          fileSetCheck.finishProcessing();
+        }
+      } catch (final CheckstyleException | RuntimeException e) {
+        return null;
+      }
+      return Thread.currentThread().isInterrupted() ? null : rename(collector.getData(), names);
+    }
+
+    private ViolationReport process(List<File> files) {
+      collector.reset();
+      try {
+        checker.process(files);
+      } catch (final CheckstyleException e) {
+        return null;
+      }
+      return Thread.currentThread().isInterrupted() ? null : collector.getData();
+    }
+
+    private boolean accept(String fileName) {
+      if (!fileName.startsWith(projectPath)) {
+        return true;
+      }
+
+      final String relative = fileName.substring(projectPath.length()).replace('\\', '/');
+      if (relative.startsWith("/target/")) {
+        return false;
+      }
+      return !(excludeTestFiles && relative.startsWith("/src/test/"));
+    }
+  }
+}
@@ -3,25 +3,110 @@
  */
 package com.philips.bootcamp.tools;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
 import com.philips.bootcamp.domain.Tool;
+import com.philips.bootcamp.domain.ToolTimeoutException;
 import com.philips.bootcamp.utils.FileUtils;
-import com.philips.bootcamp.utils.TerminalUtils;
+import com.philips.bootcamp.utils.ProcessResult;
+import com.philips.bootcamp.utils.ProcessRunner;
 
 public class Maven implements Tool {
   static final String COMMAND = "command";
+  public static final String LOG = "log";
 
   @Override
   public JsonObject execute(JsonObject settings) {
-    final StringBuilder command = new StringBuilder("\"./../tools/maven.bat\"");
+    final String project = settings.get("project").getAsString();
+    final String command = settings.get(COMMAND).getAsString();
+
+    final File daemon = getDaemon();
+    final File directory = daemon == null ? null : new File(project);
+    final List<String> arguments = daemon == null
+        ? Arrays.asList("./../tools/maven.bat", project, command) : getDaemonCommand(daemon, command);
+
+    final long timeout = settings.has(DEADLINE)
+        ? Math.max(1, settings.get(DEADLINE).getAsLong() - System.currentTimeMillis()) : 0;
+
+    // the full log goes to disk line by line, only the parsed summary stays in memory. It replaces
+    // the log of the previous build only once this build has run to its end.
+    final MavenLogParser parser = new MavenLogParser();
+    final File log = settings.has(LOG) ? new File(settings.get(LOG).getAsString()) : null;
+    final File partialLog = log == null ? null : new File(log.getPath() + ".part");
+    ProcessResult result = null;
+    try (BufferedWriter writer = log == null ? null : Files.newBufferedWriter(partialLog.toPath())) {
+      result = ProcessRunner.run(directory, arguments, line -> {
+        parser.accept(line);
+        writeLine(writer, line);
+      }, null, timeout);
+    } catch (final IOException ioe) {
+      result = null;
+    }
+
+    final boolean completed = result != null && !result.isTimedOut();
+    if (partialLog != null) {
+      try {
+        if (completed) {
+          Files.move(partialLog.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+          Files.deleteIfExists(partialLog.toPath());
+        }
+      } catch (final IOException ioe) {
+        // the report does not depend on the log file
+      }
+    }
+    if (result != null && result.isTimedOut()) {
+      throw new ToolTimeoutException(getName());
+    }
+    return completed ? parser.getReport() : null;
+  }
+
+  private static void writeLine(BufferedWriter writer, String line) {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.write(line);
+      writer.newLine();
+    } catch (final IOException ioe) {
+      // a log that cannot be written must not fail the build
+    }
+  }
 
-    command.append(" \"" + settings.get("project").getAsString() + "\"");
-    command.append(" \"" + settings.get(COMMAND).getAsString() + "\"");
+  /**
+   * Returns the mvnd launcher installed under tools/mvnd, or null. Its daemons keep the maven core
+   * and plugin class realms loaded between builds, which saves the jvm and maven startup per fence.
+   */
+  File getDaemon() {
+    final File bin = new File(Constants.toolsDirectory, "mvnd/bin");
+    for (final String name : new String[] {"mvnd.cmd", "mvnd"}) {
+      final File launcher = new File(bin, name);
+      if (launcher.isFile()) {
+        return launcher;
+      }
+    }
+    return null;
+  }
 
-    final String out = TerminalUtils.run(command.toString());
-    return handleOutput(out);
+  // the mvn of the command is replaced by the daemon launcher, all projects share one local repository
+  List<String> getDaemonCommand(File daemon, String command) {
+    final List<String> arguments = new ArrayList<>();
+    arguments.add(daemon.getAbsolutePath());
+    final String[] tokens = command.trim().split("\\s+");
+    for (int i = 1; i < tokens.length; i++) {
+      arguments.add(tokens[i]);
+    }
+    arguments.add("--batch-mode");
+    arguments.add("-Dmaven.repo.local=" + Constants.repositoryDirectory.getAbsolutePath());
+    return arguments;
   }
 
   public JsonObject handleOutput(String out) {
@@ -29,16 +114,11 @@ public class Maven implements Tool {
       return null;
     }
 
-    final JsonObject report = new JsonObject();
-    // do something to figure out of build is successful or not
-    if (out.contains("BUILD SUCCESS")) {
-      report.addProperty("buildStatus", "success");
-    } else {
-      report.addProperty("buildStatus", "failure");
+    final MavenLogParser parser = new MavenLogParser();
+    for (final String line : out.split("\r?\n", -1)) {
+      parser.accept(line);
     }
-
-    report.addProperty("details", out);
-    return report;
+    return parser.getReport();
   }
 
   @Override
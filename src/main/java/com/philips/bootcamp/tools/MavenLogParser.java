@@ -0,0 +1,93 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.google.gson.JsonObject;
+
+/**
+ * Builds the maven report from the log one line at a time, so a build log never has to be held in
+ * memory. Only the last lines are kept for the details of the report.
+ */
+public class MavenLogParser {
+  public static final int TAIL_LINES = 200;
+  public static final int MAX_LINE_LENGTH = 1000;
+
+  private static final Pattern MODULE = Pattern.compile(
+      "^\\[INFO\\] (.+?) \\.+ (SUCCESS|FAILURE|SKIPPED)(?: \\[\\s*([0-9.:]+)\\s*(s|min|h)?\\])?$");
+  // the compiler plugin reports each warning with the source and its position, e.g. "[WARNING]
+  // /src/A.java:[12,5] unchecked conversion"; warnings of surefire and other plugins are not counted
+  private static final Pattern COMPILER_WARNING = Pattern.compile("^\\[WARNING\\] .+\\.java:\\[\\d+(?:,\\d+)?\\] ");
+  private static final Pattern TESTS = Pattern.compile(
+      "Tests run: (\\d+), Failures: (\\d+), Errors: (\\d+), Skipped: (\\d+)$");
+
+  private final Deque<String> tail = new ArrayDeque<>();
+  private final JsonObject modules = new JsonObject();
+  private boolean success;
+  private boolean inTestResults;
+  private int warnings;
+  private int testsRun;
+  private int testFailures;
+  private int testErrors;
+  private int testsSkipped;
+
+  public void accept(String line) {
+    if (line.length() > MAX_LINE_LENGTH) {
+      line = line.substring(0, MAX_LINE_LENGTH);
+    }
+    tail.addLast(line);
+    if (tail.size() > TAIL_LINES) {
+      tail.removeFirst();
+    }
+
+    if (line.contains("BUILD SUCCESS")) {
+      success = true;
+    }
+    if (COMPILER_WARNING.matcher(line).find()) {
+      warnings++;
+    }
+
+    // surefire repeats the counts per test class, only the summary after "Results:" is added up
+    if (line.endsWith("Results:")) {
+      inTestResults = true;
+    }
+    final Matcher tests = TESTS.matcher(line);
+    if (inTestResults && tests.find()) {
+      testsRun += Integer.parseInt(tests.group(1));
+      testFailures += Integer.parseInt(tests.group(2));
+      testErrors += Integer.parseInt(tests.group(3));
+      testsSkipped += Integer.parseInt(tests.group(4));
+      inTestResults = false;
+    }
+
+    final Matcher module = MODULE.matcher(line);
+    if (module.matches()) {
+      final JsonObject timing = new JsonObject();
+      timing.addProperty("status", module.group(2).toLowerCase());
+      if (module.group(3) != null) {
+        timing.addProperty("time", module.group(3) + (module.group(4) == null ? "" : " " + module.group(4)));
+      }
+      modules.add(module.group(1), timing);
+    }
+  }
+
+  public JsonObject getReport() {
+    final JsonObject report = new JsonObject();
+    report.addProperty("buildStatus", success ? "success" : "failure");
+    report.addProperty("details", String.join("\n", tail));
+    report.add("modules", modules);
+    report.addProperty("warnings", warnings);
+
+    final JsonObject tests = new JsonObject();
+    tests.addProperty("run", testsRun);
+    tests.addProperty("failures", testFailures);
+    tests.addProperty("errors", testErrors);
+    tests.addProperty("skipped", testsSkipped);
+    report.add("tests", tests);
+    return report;
+  }
+}
@@ -5,26 +5,23 @@ package com.philips.bootcamp.tools;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.List;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
 import com.philips.bootcamp.domain.Tool;
+import com.philips.bootcamp.domain.ViolationReport;
 import com.philips.bootcamp.utils.FileUtils;
-import com.philips.bootcamp.utils.TerminalUtils;
-import jdk.internal.org.jline.utils.Log;
+import com.philips.bootcamp.utils.ReportUtils;
+import com.philips.bootcamp.utils.XmlUtils;
 
 public class PMD implements Tool {
   static final String ERRORS = "errors";
@@ -35,60 +32,66 @@ public class PMD implements Tool {
   static final String PERCENTAGE_CHANGE = "percentageChange";
   static final String RULESET = "ruleset";
 
+  private final PmdEngine engine = new PmdEngine();
+
 
   public JsonObject parseXml(String out) {
     if (out == null) {
       return null;
     }
+    return parseXmlStream(new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public JsonObject parseXmlStream(InputStream is) {
+    if (is == null) {
+      return null;
+    }
 
+    int noOfViolations = 0;
     final JsonObject report = new JsonObject();
     final JsonObject metrics = new JsonObject();
 
+    XMLStreamReader reader = null;
     try {
-      final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-
-      dbFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-      final DocumentBuilder builder = dbFactory.newDocumentBuilder();
-      final Document document = builder.parse(new ByteArrayInputStream(out.getBytes()));
-
-      // recommended
-      document.getDocumentElement().normalize();
-      final NodeList files = document.getElementsByTagName("file");
-
-      final int noOfViolations = document.getElementsByTagName("violation").getLength();
-      metrics.addProperty(ERRORS, noOfViolations);
-
-      for (int index = 0; index < files.getLength(); index++) {
-
-        final JsonArray array = new JsonArray();
-
-        final Node file = files.item(index);
-        final NamedNodeMap attributes = file.getAttributes();
-        final String fileLocation = attributes.getNamedItem("name").getNodeValue();
-        Log.debug(fileLocation);
-
-        final NodeList errors = ((Element) file).getElementsByTagName("violation");
-        final int errorLength = errors.getLength();
-
-        for (int eindex = 0; eindex < errorLength; eindex++) {
-          final JsonObject object = new JsonObject();
-
-          final Node error = errors.item(eindex);
-          final NamedNodeMap errorDetails = error.getAttributes();
-          object.addProperty("line", errorDetails.getNamedItem("beginline").getNodeValue());
-          object.addProperty("priority", errorDetails.getNamedItem("priority").getNodeValue());
-          object.addProperty("message", error.getTextContent());
-
-          array.add(object);
+      reader = XmlUtils.newSecureInputFactory().createXMLStreamReader(is);
+
+      JsonArray array = null;
+      JsonObject violation = null;
+      final StringBuilder message = new StringBuilder();
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          final String element = reader.getLocalName();
+          if (element.equals("file")) {
+            array = new JsonArray();
+            report.add(reader.getAttributeValue(null, "name"), array);
+          } else if (element.equals("violation")) {
+            noOfViolations++;
+            violation = new JsonObject();
+            violation.addProperty("line", reader.getAttributeValue(null, "beginline"));
+            violation.addProperty("priority", reader.getAttributeValue(null, "priority"));
+            message.setLength(0);
+          }
+        } else if (violation != null && (event == XMLStreamConstants.CHARACTERS
+            || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+          message.append(reader.getText());
+        } else if (event == XMLStreamConstants.END_ELEMENT && violation != null
+            && reader.getLocalName().equals("violation")) {
+          violation.addProperty("message", message.toString());
+          if (array != null) {
+            array.add(violation);
+          }
+          violation = null;
         }
-
-        report.add(fileLocation, array);
       }
-
-    } catch (ParserConfigurationException | SAXException | IOException e) {
+    } catch (final XMLStreamException e) {
       return null;
+    } finally {
+      Checkstyle.closeQuietly(reader);
     }
 
+    metrics.addProperty(ERRORS, noOfViolations);
+
     final JsonObject data = new JsonObject();
     data.add(REPORT, report);
     data.add(METRICS, metrics);
@@ -97,15 +100,35 @@ public class PMD implements Tool {
 
   @Override
   public JsonObject execute(JsonObject settings) {
-    final StringBuilder command = new StringBuilder();
-    command.append("\"" + new File(Constants.toolsDirectory, "pmd/bin/pmd.bat").getAbsolutePath() + "\"");
-    command.append(" -d " + "\"" + settings.get("project").getAsString() + "\"");
-    command.append(" -R " + settings.get(RULESET).getAsString());
-    command.append(" -f xml");
-    command.append(" -r " + "\"" + Constants.output.getAbsolutePath() + "\"");
+    final ViolationReport report = executeReport(settings);
+    return report == null ? null : report.toJson();
+  }
+
+  @Override
+  public boolean reportsViolations() {
+    return true;
+  }
 
-    TerminalUtils.run(command.toString());
-    return parseXml(FileUtils.getFileContents(Constants.output));
+  @Override
+  public ViolationReport executeReport(JsonObject settings) {
+    final File project = new File(settings.get("project").getAsString());
+    return engine.analyze(project, settings.get(RULESET).getAsString(), ReportUtils.getFiles(settings));
+  }
+
+  @Override
+  public boolean canAnalyzeSource() {
+    return true;
+  }
+
+  @Override
+  public JsonObject analyze(Map<String, String> sources, JsonObject settings) {
+    final ViolationReport report = engine.analyze(sources, settings.get(RULESET).getAsString());
+    return report == null ? null : report.toJson();
+  }
+
+  @Override
+  public String getFingerprint(JsonObject settings) {
+    return engine.getFingerprint(settings.get(RULESET).getAsString());
   }
 
   @Override
@@ -137,6 +160,11 @@ public class PMD implements Tool {
     return true;
   }
 
+  @Override
+  public boolean isIncremental() {
+    return true;
+  }
+
   @Override
   public JsonObject getDefaultSettings() {
     final JsonObject defaults = new JsonObject();
@@ -146,15 +174,23 @@ public class PMD implements Tool {
 
   @Override
   public JsonObject compare(JsonObject futureReport, JsonObject pastReport) {
+    return compare(getErrors(futureReport), getErrors(pastReport),
+        () -> ReportUtils.diff(futureReport, pastReport));
+  }
+
+  @Override
+  public JsonObject compare(ViolationReport futureReport, ViolationReport pastReport) {
+    return compare(futureReport == null ? null : futureReport.size(),
+        pastReport == null ? null : pastReport.size(), () -> ReportUtils.diff(futureReport, pastReport));
+  }
+
+  private JsonObject compare(Integer errorsNow, Integer errorsThen, Supplier<JsonObject> violations) {
     final JsonObject comparison = new JsonObject();
     double percentage = 0.0;
 
     final DecimalFormat df = new DecimalFormat("#.###");
 
-    if (pastReport != null && futureReport != null) {
-      final int errorsThen = pastReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-      final int errorsNow = futureReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-
+    if (errorsThen != null && errorsNow != null) {
       if (errorsThen != -1) {
         percentage = (errorsThen - errorsNow) * 1f / (errorsThen * 1f);
       }
@@ -162,12 +198,11 @@ public class PMD implements Tool {
       comparison.addProperty(ERRORS_THEN, errorsThen);
       comparison.addProperty(ERRORS_NOW, errorsNow);
       comparison.addProperty(PERCENTAGE_CHANGE, df.format(percentage));
+      comparison.add("violations", violations.get());
 
       return comparison;
 
-    } else if (pastReport == null && futureReport != null) {
-      final int errorsNow = futureReport.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
-
+    } else if (errorsThen == null && errorsNow != null) {
       comparison.addProperty(ERRORS_THEN, "null");
       comparison.addProperty(ERRORS_NOW, errorsNow);
       comparison.addProperty(PERCENTAGE_CHANGE, "null");
@@ -181,4 +216,8 @@ public class PMD implements Tool {
       return comparison;
     }
   }
-}
\ No newline at end of file
+
+  private static Integer getErrors(JsonObject report) {
+    return report == null ? null : report.get(METRICS).getAsJsonObject().get(ERRORS).getAsInt();
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import com.philips.bootcamp.domain.ViolationReport;
+import com.philips.bootcamp.utils.FileUtils;
+import com.philips.bootcamp.utils.HashUtils;
+import com.philips.bootcamp.utils.ReportUtils;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.RulesetsFactoryUtils;
+import net.sourceforge.pmd.SourceCodeProcessor;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.ast.TokenMgrError;
+import net.sourceforge.pmd.util.ResourceLoader;
+
+/**
+ * Runs pmd inside the service jvm. Parsed rulesets are cached by name and content hash, every run
+ * works on its own copy of them since rules may keep state while a file is processed.
+ */
+public class PmdEngine {
+  public static final String VERSION = PMDVersion.VERSION;
+  static final String PRIORITY = "priority";
+  static final long FINGERPRINT_MILLIS = 5000;
+
+  private final PMDConfiguration configuration = new PMDConfiguration();
+  private final ResourceLoader resourceLoader = new ResourceLoader();
+  private final Map<String, RuleSets> ruleSetsCache = new ConcurrentHashMap<>();
+  private final Map<String, Map.Entry<String, Long>> fingerprints = new ConcurrentHashMap<>();
+
+  public ViolationReport analyze(File project, String ruleset) {
+    return analyze(project, ruleset, null);
+  }
+
+  /**
+   * Analyzes only the given files of the project, or all of them when files is null.
+   */
+  public ViolationReport analyze(File project, String ruleset, List<File> files) {
+    if (project == null || ruleset == null) {
+      return null;
+    }
+
+    final RuleSets parsed;
+    final String namespace;
+    try {
+      final String hash = getRuleSetHash(ruleset);
+      parsed = getRuleSets(ruleset, hash);
+      namespace = ViolationCache.namespace("pmd", VERSION, ruleset + ":" + hash);
+    } catch (RuleSetNotFoundException | IOException e) {
+      return null;
+    }
+
+    final List<String> extensions = Collections.singletonList("java");
+    final List<File> candidates = new ArrayList<>();
+    for (final File file : files == null
+        ? FileUtils.listFiles(project, extensions) : FileUtils.filterFiles(files, extensions)) {
+      if (parsed.applies(file)) {
+        candidates.add(file);
+      }
+    }
+
+    final ViolationReport data = ViolationCache.getDefault().analyze(candidates, namespace, getScope(),
+        misses -> process(parsed, misses), false, PRIORITY);
+    return Thread.currentThread().isInterrupted() ? null : data;
+  }
+
+  /**
+   * Identifies the pmd version and the contents of the ruleset, or returns null if it cannot be read.
+   * Reading the ruleset costs more than a cached report, so it is read again only after a while.
+   */
+  public String getFingerprint(String ruleset) {
+    if (ruleset == null) {
+      return null;
+    }
+    final Map.Entry<String, Long> checked = fingerprints.get(ruleset);
+    final long now = System.currentTimeMillis();
+    if (checked != null && now - checked.getValue() < FINGERPRINT_MILLIS) {
+      return checked.getKey();
+    }
+    try {
+      final String fingerprint = ViolationCache.namespace("pmd", VERSION, ruleset + ":" + getRuleSetHash(ruleset));
+      fingerprints.put(ruleset, new AbstractMap.SimpleImmutableEntry<>(fingerprint, now));
+      return fingerprint;
+    } catch (RuleSetNotFoundException | IOException e) {
+      fingerprints.remove(ruleset);
+      return null;
+    }
+  }
+
+  /**
+   * Analyzes sources keyed by file name without touching the disk, the names only select the
+   * language. All sources share one copy of the rulesets.
+   */
+  public ViolationReport analyze(Map<String, String> sources, String ruleset) {
+    if (sources == null || ruleset == null) {
+      return null;
+    }
+
+    final RuleSets parsed;
+    try {
+      parsed = getRuleSets(ruleset, getRuleSetHash(ruleset));
+    } catch (RuleSetNotFoundException | IOException e) {
+      return null;
+    }
+
+    final RuleSets ruleSets = new RuleSets(parsed);
+    final SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
+    final RuleContext context = new RuleContext();
+    context.setReport(new Report());
+    ruleSets.start(context);
+
+    for (final Map.Entry<String, String> source : sources.entrySet()) {
+      if (source.getKey() == null || source.getValue() == null) {
+        continue;
+      }
+      context.setSourceCodeFile(new File(source.getKey()));
+      context.setSourceCodeFilename(source.getKey());
+      context.setLanguageVersion(null);
+      try {
+        processor.processSourceCode(new StringReader(source.getValue()), ruleSets, context);
+      } catch (final PMDException e) {
+        // a source that does not parse has no violations, as in a project run
+        if (!isParseError(e)) {
+          return null;
+        }
+      }
+    }
+
+    ruleSets.end(context);
+    return collect(context.getReport(), Collections.emptyList(),
+        name -> Arrays.asList(sources.get(name).split("\\R", -1)));
+  }
+
+  private ViolationReport process(RuleSets parsed, List<File> files) {
+    final RuleSets ruleSets = new RuleSets(parsed);
+    final SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
+    final RuleContext context = new RuleContext();
+    context.setReport(new Report());
+    ruleSets.start(context);
+
+    final List<String> processed = new ArrayList<>();
+    for (final File file : files) {
+      // an interrupted run stops between files and is discarded
+      if (Thread.currentThread().isInterrupted()) {
+        return null;
+      }
+      context.setSourceCodeFile(file);
+      context.setSourceCodeFilename(file.getAbsolutePath());
+      context.setLanguageVersion(null);
+      try (InputStream is = new FileInputStream(file)) {
+        processor.processSourceCode(is, ruleSets, context);
+        processed.add(file.getAbsolutePath());
+      } catch (final PMDException e) {
+        if (!isParseError(e)) {
+          return null;
+        }
+        processed.add(file.getAbsolutePath());
+      } catch (final IOException ioe) {
+        // pmd skips files it cannot read as well, they are left out of the report and the cache
+      }
+    }
+
+    ruleSets.end(context);
+    return collect(context.getReport(), processed, name -> ReportUtils.readLines(new File(name)));
+  }
+
+  // pmd skips files that do not parse, any other failure means the rules could not run at all and
+  // the run would look clean
+  private static boolean isParseError(PMDException e) {
+    return e.getCause() instanceof ParseException || e.getCause() instanceof TokenMgrError;
+  }
+
+  // once the project classes are on the auxclasspath, type resolution makes the violations of a file
+  // depend on the other files of the project, and they are not cached
+  private ViolationCache.Scope getScope() {
+    final boolean auxclasspath = configuration.getClassLoader() != PMDConfiguration.class.getClassLoader();
+    return auxclasspath ? ViolationCache.Scope.NONE : ViolationCache.Scope.CONTENT;
+  }
+
+  private RuleSets getRuleSets(String ruleset, String hash) throws RuleSetNotFoundException {
+    final String key = ruleset + ":" + hash;
+    RuleSets ruleSets = ruleSetsCache.get(key);
+    if (ruleSets == null) {
+      final RuleSetFactory factory = RulesetsFactoryUtils.getRulesetFactory(configuration, resourceLoader);
+      ruleSets = factory.createRuleSets(ruleset);
+      ruleSetsCache.put(key, ruleSets);
+    }
+    return ruleSets;
+  }
+
+  private String getRuleSetHash(String ruleset) throws RuleSetNotFoundException, IOException {
+    final MessageDigest digest = HashUtils.newDigest();
+    for (final String name : ruleset.split(",")) {
+      try (InputStream is = resourceLoader.loadResourceAsStream(name.trim())) {
+        if (is == null) {
+          throw new RuleSetNotFoundException("Can't find resource " + name.trim());
+        }
+        HashUtils.update(digest, is);
+      }
+    }
+    return HashUtils.toHex(digest.digest());
+  }
+
+  // processed files are listed even without violations
+  private ViolationReport collect(Report pmdReport, List<String> processed,
+      Function<String, List<String>> sourceLines) {
+    // violations are grouped by file, in the order the files were processed or first reported
+    final Map<String, List<RuleViolation>> files = new LinkedHashMap<>();
+    for (final String file : processed) {
+      files.put(file, new ArrayList<>());
+    }
+    final Iterator<RuleViolation> violations = pmdReport.iterator();
+    while (violations.hasNext()) {
+      final RuleViolation violation = violations.next();
+      files.computeIfAbsent(violation.getFilename(), name -> new ArrayList<>()).add(violation);
+    }
+
+    final ViolationReport report = new ViolationReport(PRIORITY);
+    for (final Map.Entry<String, List<RuleViolation>> file : files.entrySet()) {
+      report.addFile(file.getKey());
+      if (file.getValue().isEmpty()) {
+        continue;
+      }
+      final List<String> lines = sourceLines.apply(file.getKey());
+      for (final RuleViolation violation : file.getValue()) {
+        report.add(violation.getBeginLine(), String.valueOf(violation.getRule().getPriority().getPriority()),
+            violation.getRule().getName(), violation.getDescription(),
+            ReportUtils.getContext(lines, violation.getBeginLine()));
+      }
+    }
+    return report;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.philips.bootcamp.domain.Constants;
+import com.philips.bootcamp.domain.ViolationReport;
+import com.philips.bootcamp.utils.HashUtils;
+
+/**
+ * Persistent cache of the violations of single files, keyed by file content, tool, tool version and
+ * effective settings. Since the key does not contain the path, byte-identical files of different
+ * projects and branches share their entries. The cache stays below a size budget by evicting the
+ * least recently used entries.
+ */
+public class ViolationCache {
+  // bumped whenever the violations the engines report change shape
+  static final int FORMAT = 4;
+  public static final long MAX_BYTES = Long.getLong("fences.cache.maxBytes", 256L * 1024 * 1024);
+
+  private static final ViolationCache DEFAULT =
+      new ViolationCache(Constants.cacheDirectory, MAX_BYTES);
+
+  private final File directory;
+  private final long maxBytes;
+  private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+  private boolean loaded;
+
+  public ViolationCache(File directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  public static ViolationCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * What the cached violations of a file hold for.
+   */
+  public enum Scope {
+    /** every file with the same content, wherever it is */
+    CONTENT,
+    /** the same path with the same content, for checks that look at the name of the file */
+    PATH,
+    /** nothing, for checks that look at other files as well */
+    NONE
+  }
+
+  public static String namespace(String tool, String version, String settings) {
+    return HashUtils.sha256(FORMAT + "\n" + tool + "\n" + version + "\n" + settings);
+  }
+
+  /**
+   * Builds the report of the given files, running the analyzer only on files without a cache entry.
+   * The analyzer lists every file it processed, with or without violations; files it leaves out,
+   * e.g. because they could not be read, are not cached. Files without violations stay in the
+   * report when keepEmpty is set, as checkstyle lists them. The level name is the property the
+   * analyzer reports severities under.
+   */
+  public ViolationReport analyze(List<File> files, String namespace, Scope scope,
+      Function<List<File>, ViolationReport> analyzer, boolean keepEmpty, String levelName) {
+    final Map<File, String> keys = new LinkedHashMap<>();
+    final ViolationReport cached = new ViolationReport(levelName);
+    final List<File> misses = new ArrayList<>();
+
+    for (final File file : files) {
+      String key = null;
+      try {
+        if (scope == Scope.CONTENT) {
+          key = HashUtils.sha256(namespace + ":" + HashUtils.sha256(Files.readAllBytes(file.toPath())));
+        } else if (scope == Scope.PATH) {
+          key = HashUtils.sha256(namespace + ":" + file.getAbsolutePath() + ":"
+              + HashUtils.sha256(Files.readAllBytes(file.toPath())));
+        }
+      } catch (final IOException ioe) {
+        // unreadable files go to the analyzer, which reports them the way it always did
+      }
+
+      final JsonArray violations = key == null ? null : get(key);
+      if (violations == null || !cached.addFile(file.getAbsolutePath(), violations)) {
+        misses.add(file);
+        keys.put(file, key);
+      }
+    }
+
+    ViolationReport partial = null;
+    if (!misses.isEmpty()) {
+      partial = analyzer.apply(misses);
+      if (partial == null) {
+        return null;
+      }
+    }
+
+    for (final File file : misses) {
+      final String key = keys.get(file);
+      final int analyzed = partial.indexOf(file.getAbsolutePath());
+      if (key != null && analyzed >= 0) {
+        put(key, toJson(partial, analyzed));
+      }
+    }
+
+    final ViolationReport report = new ViolationReport(levelName);
+    for (final File file : files) {
+      ViolationReport source = cached;
+      int index = cached.indexOf(file.getAbsolutePath());
+      if (index < 0 && partial != null) {
+        source = partial;
+        index = partial.indexOf(file.getAbsolutePath());
+      }
+      if (index < 0 || (!keepEmpty && source.getStart(index) == source.getEnd(index))) {
+        continue;
+      }
+      report.addFile(file.getAbsolutePath(), source, index);
+    }
+    return report;
+  }
+
+  public JsonArray get(String key) {
+    synchronized (this) {
+      load();
+      if (index.get(key) == null) {
+        return null;
+      }
+    }
+
+    final File entry = getEntryFile(key);
+    try {
+      final String contents = new String(Files.readAllBytes(entry.toPath()), StandardCharsets.UTF_8);
+      final JsonArray violations = new JsonParser().parse(contents).getAsJsonArray();
+      entry.setLastModified(System.currentTimeMillis());
+      return violations;
+    } catch (IOException | RuntimeException e) {
+      remove(key);
+      return null;
+    }
+  }
+
+  public void put(String key, JsonArray violations) {
+    put(key, violations.toString());
+  }
+
+  private void put(String key, String violations) {
+    final File entry = getEntryFile(key);
+    final byte[] contents = violations.getBytes(StandardCharsets.UTF_8);
+    try {
+      entry.getParentFile().mkdirs();
+      final Path temp = Files.createTempFile(entry.getParentFile().toPath(), key, ".tmp");
+      Files.write(temp, contents);
+      Files.move(temp, entry.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException ioe) {
+      return;
+    }
+
+    synchronized (this) {
+      load();
+      final Long previous = index.put(key, (long) contents.length);
+      totalBytes += contents.length - (previous == null ? 0 : previous);
+      evict();
+    }
+  }
+
+  public synchronized long getSize() {
+    load();
+    return totalBytes;
+  }
+
+  private static String toJson(ViolationReport report, int file) {
+    final StringWriter json = new StringWriter();
+    try {
+      report.writeViolations(new JsonWriter(json), file);
+    } catch (final IOException ioe) {
+      throw new IllegalStateException(ioe);
+    }
+    return json.toString();
+  }
+
+  private synchronized void remove(String key) {
+    final Long size = index.remove(key);
+    if (size != null) {
+      totalBytes -= size;
+    }
+    getEntryFile(key).delete();
+  }
+
+  private void evict() {
+    final Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      final Map.Entry<String, Long> entry = eldest.next();
+      getEntryFile(entry.getKey()).delete();
+      totalBytes -= entry.getValue();
+      eldest.remove();
+    }
+  }
+
+  // the index is rebuilt from disk once, using modification times as the access order
+  private void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+
+    if (!directory.isDirectory()) {
+      directory.mkdirs();
+      return;
+    }
+
+    try (Stream<Path> paths = Files.walk(directory.toPath(), 2)) {
+      paths.map(Path::toFile)
+          .filter(file -> file.isFile() && file.getName().endsWith(".json"))
+          .sorted(Comparator.comparingLong(File::lastModified))
+          .forEach(file -> {
+            final String name = file.getName();
+            index.put(name.substring(0, name.length() - ".json".length()), file.length());
+            totalBytes += file.length();
+          });
+    } catch (final IOException ioe) {
+      // start with what could be read, unknown entries are overwritten when they come up again
+    }
+    evict();
+  }
+
+  private File getEntryFile(String key) {
+    return new File(new File(directory, key.substring(0, 2)), key + ".json");
+  }
+}
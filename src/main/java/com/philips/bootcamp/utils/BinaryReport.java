@@ -0,0 +1,624 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.philips.bootcamp.domain.ViolationReport;
+
+/**
+ * Compact form of a fence report. All strings live once in a dictionary. The
+ * violations of tools reporting per file are stored as columns of line, severity or priority,
+ * rule, message and context, with an offset index per file, so the violations of one file can be
+ * looked up without reading the rest. Everything else, like the maven report, is kept as json.
+ *
+ * <pre>
+ * int magic, int format
+ * int strings, int[strings + 1] offsets, byte[] utf-8 data
+ * int entries, per entry: int name, int json, int section (-1 unless columnar)
+ * section: int files, int rows, int[files] names, int[files] sorted, int[files + 1] first rows,
+ *          int[rows] line, int[rows] level, int[rows] rule, int[rows] message, int[rows] layout,
+ *          int[rows] context (since format 2)
+ * </pre>
+ */
+public final class BinaryReport {
+  private static final int MAGIC = 0x46524550;
+  private static final int FORMAT = 2;
+  private static final int NONE = -1;
+  private static final int NO_LINE = Integer.MIN_VALUE;
+  private static final String LINE = "line";
+  private static final String RULE = "rule";
+  private static final String MESSAGE = "message";
+  private static final String CONTEXT = "context";
+  private static final Pattern CONTEXT_HASH = Pattern.compile("[0-9a-f]{8}");
+  private static final List<String> LEVELS = Arrays.asList("severity", "priority");
+
+  private final ByteBuffer buffer;
+  private final int stringOffsets;
+  private final int stringData;
+  private final int entries;
+  private final int entryCount;
+
+  private BinaryReport(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    final int format = buffer.limit() < 12 ? 0 : buffer.getInt(4);
+    if (format < 1 || format > FORMAT || buffer.getInt(0) != MAGIC) {
+      throw new IOException("[ERROR] Not a binary report");
+    }
+    final int strings = buffer.getInt(8);
+    stringOffsets = 12;
+    stringData = stringOffsets + 4 * (strings + 1);
+    entries = stringData + buffer.getInt(stringOffsets + 4 * strings) + 4;
+    entryCount = buffer.getInt(entries - 4);
+  }
+
+  /**
+   * Reads the report into memory and closes the file again. The file is not mapped, as a mapping
+   * would keep it from being replaced by the next run on Windows while the report is in use.
+   */
+  public static BinaryReport open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("[ERROR] Not a binary report");
+      }
+      final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()) < 0) {
+          throw new IOException("[ERROR] Not a binary report");
+        }
+      }
+      buffer.flip();
+      return new BinaryReport(buffer);
+    }
+  }
+
+  /**
+   * Writes the report next to the file first and then moves it in place, so readers see either
+   * the old or the new report.
+   */
+  public static void write(File file, JsonObject report) throws IOException {
+    write(file, report, Collections.<String, ViolationReport>emptyMap());
+  }
+
+  /**
+   * Writes the report with the violations of the given tools taken from their typed reports. The
+   * report holds a placeholder for each of these tools to keep the order of the parts.
+   */
+  public static void write(File file, JsonObject report, Map<String, ViolationReport> violationReports)
+      throws IOException {
+    try (Writer writer = new Writer(file)) {
+      for (final Map.Entry<String, JsonElement> entry : report.entrySet()) {
+        final ViolationReport violations = violationReports.get(entry.getKey());
+        if (violations != null) {
+          writer.add(entry.getKey(), violations);
+        } else {
+          writer.add(entry.getKey(), entry.getValue());
+        }
+      }
+      writer.commit();
+    }
+  }
+
+  public List<String> getNames() {
+    final List<String> names = new ArrayList<>(entryCount);
+    for (int i = 0; i < entryCount; i++) {
+      names.add(getString(buffer.getInt(entries + 12 * i)));
+    }
+    return names;
+  }
+
+  /**
+   * Returns the part of the report stored under the name, or null if there is none.
+   */
+  public JsonElement get(String name) {
+    final int entry = findEntry(name);
+    return entry == NONE ? null : getEntry(entry);
+  }
+
+  /**
+   * Returns the violations of one file reported by the tool, reading only that file's rows. Null is
+   * returned if the tool did not report the file or does not report per file.
+   */
+  public JsonArray getViolations(String tool, String fileName) {
+    final int entry = findEntry(tool);
+    final int section = entry == NONE ? NONE : buffer.getInt(entries + 12 * entry + 8);
+    if (section == NONE) {
+      return null;
+    }
+
+    final int files = buffer.getInt(section);
+    int low = 0;
+    int high = files - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int file = buffer.getInt(section + 8 + 4 * files + 4 * middle);
+      final int compared = getString(buffer.getInt(section + 8 + 4 * file)).compareTo(fileName);
+      if (compared == 0) {
+        return getRows(section, file);
+      } else if (compared < 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the violations of the tool as a typed report, read straight from the columns where
+   * they fit it, or null if the tool does not report per file.
+   */
+  public ViolationReport getViolationReport(String tool) {
+    final int entry = findEntry(tool);
+    final int section = entry == NONE ? NONE : buffer.getInt(entries + 12 * entry + 8);
+    if (section == NONE) {
+      return ViolationReport.fromJson(getJsonObject(get(tool)));
+    }
+
+    final int files = buffer.getInt(section);
+    final int rows = buffer.getInt(section + 4);
+    final int firstRows = section + 8 + 8 * files;
+    final int columns = firstRows + 4 * (files + 1);
+
+    // every distinct layout is checked once, a tool with rows the typed report cannot write back the
+    // same way is read through json instead
+    final Map<Integer, String[]> layouts = new HashMap<>();
+    String levelName = null;
+    for (int row = 0; row < rows; row++) {
+      final int layout = buffer.getInt(columns + 16 * rows + 4 * row);
+      if (!layouts.containsKey(layout)) {
+        final String[] keys = getString(layout).split(",");
+        final String level = getCanonicalLevel(keys);
+        if (level == null || (levelName != null && !level.isEmpty() && !level.equals(levelName))) {
+          return ViolationReport.fromJson(getJsonObject(get(tool)));
+        }
+        levelName = level.isEmpty() ? levelName : level;
+        layouts.put(layout, keys);
+      }
+    }
+
+    final ViolationReport report = new ViolationReport(levelName == null ? LEVELS.get(0) : levelName);
+    final Map<Integer, String> strings = new HashMap<>();
+    for (int file = 0; file < files; file++) {
+      report.addFile(getString(buffer.getInt(section + 8 + 4 * file), strings));
+      final int end = buffer.getInt(firstRows + 4 * file + 4);
+      for (int row = buffer.getInt(firstRows + 4 * file); row < end; row++) {
+        final List<String> keys = Arrays.asList(layouts.get(buffer.getInt(columns + 16 * rows + 4 * row)));
+        final int level = buffer.getInt(columns + 4 * rows + 4 * row);
+        report.add(keys.contains(LINE) ? buffer.getInt(columns + 4 * row) : ViolationReport.NO_LINE,
+            level == NONE ? null : getString(level, strings),
+            keys.contains(RULE) ? getString(buffer.getInt(columns + 8 * rows + 4 * row), strings) : null,
+            keys.contains(MESSAGE) ? getString(buffer.getInt(columns + 12 * rows + 4 * row), strings) : null,
+            keys.contains(CONTEXT)
+                ? String.format("%08x", buffer.getInt(columns + 20 * rows + 4 * row)) : null);
+      }
+    }
+    return report;
+  }
+
+  public JsonObject toJson() {
+    final JsonObject report = new JsonObject();
+    for (int i = 0; i < entryCount; i++) {
+      report.add(getString(buffer.getInt(entries + 12 * i)), getEntry(i));
+    }
+    return report;
+  }
+
+  private int findEntry(String name) {
+    for (int i = 0; i < entryCount; i++) {
+      if (getString(buffer.getInt(entries + 12 * i)).equals(name)) {
+        return i;
+      }
+    }
+    return NONE;
+  }
+
+  private JsonElement getEntry(int entry) {
+    final JsonElement json = new JsonParser().parse(getString(buffer.getInt(entries + 12 * entry + 4)));
+    final int section = buffer.getInt(entries + 12 * entry + 8);
+    if (section != NONE) {
+      final JsonObject violations = new JsonObject();
+      final int files = buffer.getInt(section);
+      for (int file = 0; file < files; file++) {
+        violations.add(getString(buffer.getInt(section + 8 + 4 * file)), getRows(section, file));
+      }
+      json.getAsJsonObject().add(ReportUtils.REPORT, violations);
+    }
+    return json;
+  }
+
+  private JsonArray getRows(int section, int file) {
+    final int files = buffer.getInt(section);
+    final int rows = buffer.getInt(section + 4);
+    final int firstRows = section + 8 + 8 * files;
+    final int columns = firstRows + 4 * (files + 1);
+
+    final JsonArray violations = new JsonArray();
+    for (int row = buffer.getInt(firstRows + 4 * file); row < buffer.getInt(firstRows + 4 * file + 4); row++) {
+      final JsonObject violation = new JsonObject();
+      final int line = buffer.getInt(columns + 4 * row);
+      for (final String key : getString(buffer.getInt(columns + 16 * rows + 4 * row)).split(",")) {
+        if (key.equals(LINE)) {
+          violation.addProperty(LINE, String.valueOf(line));
+        } else if (key.equals(LINE + "#")) {
+          violation.addProperty(LINE, line);
+        } else if (key.equals(RULE)) {
+          violation.addProperty(RULE, getString(buffer.getInt(columns + 8 * rows + 4 * row)));
+        } else if (key.equals(MESSAGE)) {
+          violation.addProperty(MESSAGE, getString(buffer.getInt(columns + 12 * rows + 4 * row)));
+        } else if (key.equals(CONTEXT)) {
+          violation.addProperty(CONTEXT, String.format("%08x", buffer.getInt(columns + 20 * rows + 4 * row)));
+        } else {
+          violation.addProperty(key, getString(buffer.getInt(columns + 4 * rows + 4 * row)));
+        }
+      }
+      violations.add(violation);
+    }
+    return violations;
+  }
+
+  private String getString(int index, Map<Integer, String> strings) {
+    String string = strings.get(index);
+    if (string == null) {
+      string = getString(index);
+      strings.put(index, string);
+    }
+    return string;
+  }
+
+  private String getString(int index) {
+    final int start = buffer.getInt(stringOffsets + 4 * index);
+    final byte[] utf8 = new byte[buffer.getInt(stringOffsets + 4 * index + 4) - start];
+    final ByteBuffer data = buffer.duplicate();
+    data.position(stringData + start);
+    data.get(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  private static void writeSection(DataOutputStream out, JsonObject violations, Map<String, Integer> dictionary)
+      throws IOException {
+    final List<String> files = new ArrayList<>(violations.keySet());
+    final Integer[] sorted = new Integer[files.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, (a, b) -> files.get(a).compareTo(files.get(b)));
+
+    final List<JsonObject> rows = new ArrayList<>();
+    final int[] firstRows = new int[files.size() + 1];
+    for (int i = 0; i < files.size(); i++) {
+      firstRows[i] = rows.size();
+      for (final JsonElement violation : violations.get(files.get(i)).getAsJsonArray()) {
+        rows.add(violation.getAsJsonObject());
+      }
+    }
+    firstRows[files.size()] = rows.size();
+
+    out.writeInt(files.size());
+    out.writeInt(rows.size());
+    for (final String file : files) {
+      out.writeInt(intern(file, dictionary));
+    }
+    for (final Integer file : sorted) {
+      out.writeInt(file);
+    }
+    for (final int firstRow : firstRows) {
+      out.writeInt(firstRow);
+    }
+
+    for (final JsonObject row : rows) {
+      out.writeInt(row.has(LINE) ? row.get(LINE).getAsInt() : NO_LINE);
+    }
+    for (final JsonObject row : rows) {
+      String level = null;
+      for (final String key : LEVELS) {
+        if (row.has(key)) {
+          level = row.get(key).getAsString();
+        }
+      }
+      out.writeInt(level == null ? NONE : intern(level, dictionary));
+    }
+    for (final JsonObject row : rows) {
+      out.writeInt(row.has(RULE) ? intern(row.get(RULE).getAsString(), dictionary) : NONE);
+    }
+    for (final JsonObject row : rows) {
+      out.writeInt(row.has(MESSAGE) ? intern(row.get(MESSAGE).getAsString(), dictionary) : NONE);
+    }
+    for (final JsonObject row : rows) {
+      final List<String> layout = new ArrayList<>();
+      for (final String key : row.keySet()) {
+        layout.add(key.equals(LINE) && row.get(LINE).getAsJsonPrimitive().isNumber() ? LINE + "#" : key);
+      }
+      out.writeInt(intern(String.join(",", layout), dictionary));
+    }
+    for (final JsonObject row : rows) {
+      out.writeInt(row.has(CONTEXT) ? Integer.parseUnsignedInt(row.get(CONTEXT).getAsString(), 16) : 0);
+    }
+  }
+
+  private static void writeSection(DataOutputStream out, ViolationReport violations,
+      Map<String, Integer> dictionary) throws IOException {
+    final int files = violations.getFileCount();
+    final Integer[] sorted = new Integer[files];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, (a, b) -> violations.getFile(a).compareTo(violations.getFile(b)));
+
+    out.writeInt(files);
+    out.writeInt(violations.size());
+    for (int file = 0; file < files; file++) {
+      out.writeInt(intern(violations.getFile(file), dictionary));
+    }
+    for (final Integer file : sorted) {
+      out.writeInt(file);
+    }
+    for (int file = 0; file < files; file++) {
+      out.writeInt(violations.getStart(file));
+    }
+    out.writeInt(violations.size());
+
+    final int rows = violations.size();
+    for (int row = 0; row < rows; row++) {
+      out.writeInt(violations.hasLine(row) ? violations.getLine(row) : NO_LINE);
+    }
+    for (int row = 0; row < rows; row++) {
+      out.writeInt(internOrNone(violations.getLevel(row), dictionary));
+    }
+    for (int row = 0; row < rows; row++) {
+      out.writeInt(internOrNone(violations.getRule(row), dictionary));
+    }
+    for (int row = 0; row < rows; row++) {
+      out.writeInt(internOrNone(violations.getMessage(row), dictionary));
+    }
+    for (int row = 0; row < rows; row++) {
+      final List<String> layout = new ArrayList<>(5);
+      if (violations.hasLine(row)) {
+        layout.add(violations.isNumericLine(row) ? LINE + "#" : LINE);
+      }
+      addIfPresent(layout, violations.getLevelName(), violations.getLevel(row));
+      addIfPresent(layout, RULE, violations.getRule(row));
+      addIfPresent(layout, MESSAGE, violations.getMessage(row));
+      addIfPresent(layout, CONTEXT, violations.getContext(row));
+      out.writeInt(intern(String.join(",", layout), dictionary));
+    }
+    for (int row = 0; row < rows; row++) {
+      final String context = violations.getContext(row);
+      out.writeInt(context == null ? 0 : Integer.parseUnsignedInt(context, 16));
+    }
+  }
+
+  private static void addIfPresent(List<String> layout, String key, String value) {
+    if (value != null) {
+      layout.add(key);
+    }
+  }
+
+  private static int internOrNone(String string, Map<String, Integer> dictionary) {
+    return string == null ? NONE : intern(string, dictionary);
+  }
+
+  // the typed report writes the properties of a violation in one order and lines as strings
+  private static String getCanonicalLevel(String[] keys) {
+    final List<String> order = new ArrayList<>(Arrays.asList(LINE, null, RULE, MESSAGE, CONTEXT));
+    String level = "";
+    int last = NONE;
+    for (final String key : keys) {
+      if (key.isEmpty()) {
+        continue;
+      }
+      if (LEVELS.contains(key)) {
+        order.set(1, key);
+        level = key;
+      }
+      final int position = order.indexOf(key);
+      if (position <= last) {
+        return null;
+      }
+      last = position;
+    }
+    return level;
+  }
+
+  private static JsonObject getJsonObject(JsonElement element) {
+    return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+  }
+
+  // only reports made of violations the columns can hold exactly are stored as columns
+  private static JsonObject getColumnarReport(JsonElement element) {
+    if (!element.isJsonObject() || !element.getAsJsonObject().has(ReportUtils.REPORT)
+        || !element.getAsJsonObject().get(ReportUtils.REPORT).isJsonObject()) {
+      return null;
+    }
+
+    final JsonObject report = element.getAsJsonObject().get(ReportUtils.REPORT).getAsJsonObject();
+    for (final Map.Entry<String, JsonElement> file : report.entrySet()) {
+      if (!file.getValue().isJsonArray()) {
+        return null;
+      }
+      for (final JsonElement violation : file.getValue().getAsJsonArray()) {
+        if (!isColumnar(violation)) {
+          return null;
+        }
+      }
+    }
+    return report;
+  }
+
+  private static boolean isColumnar(JsonElement violation) {
+    if (!violation.isJsonObject()) {
+      return false;
+    }
+
+    int levels = 0;
+    for (final Map.Entry<String, JsonElement> property : violation.getAsJsonObject().entrySet()) {
+      final String key = property.getKey();
+      final JsonElement value = property.getValue();
+      if (!value.isJsonPrimitive() || key.contains(",") || key.equals(LINE + "#")) {
+        return false;
+      }
+      if (key.equals(LINE)) {
+        if (!isLine(value.getAsJsonPrimitive())) {
+          return false;
+        }
+      } else if (key.equals(CONTEXT)) {
+        if (!CONTEXT_HASH.matcher(value.getAsString()).matches()) {
+          return false;
+        }
+      } else if (LEVELS.contains(key)) {
+        levels++;
+      } else if (!key.equals(RULE) && !key.equals(MESSAGE)) {
+        return false;
+      }
+      if (!key.equals(LINE) && !value.getAsJsonPrimitive().isString()) {
+        return false;
+      }
+    }
+    return levels <= 1;
+  }
+
+  private static boolean isLine(JsonPrimitive line) {
+    try {
+      final int value = Integer.parseInt(line.getAsString());
+      return value != NO_LINE && String.valueOf(value).equals(line.getAsString());
+    } catch (final NumberFormatException nfe) {
+      return false;
+    }
+  }
+
+  private static int intern(String string, Map<String, Integer> dictionary) {
+    return dictionary.computeIfAbsent(string, s -> dictionary.size());
+  }
+
+  /**
+   * Writes a report part by part, so a part can be dropped as soon as it is added. The columns of
+   * the parts go to a file of their own right away, only the strings are kept until the report is
+   * committed, since the dictionary comes first in the file. Closing without a commit leaves the
+   * previous report in place.
+   */
+  public static final class Writer implements Closeable {
+    private final File file;
+    private final File sectionsFile;
+    private final DataOutputStream sections;
+    private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+    private final List<int[]> directory = new ArrayList<>();
+
+    public Writer(File file) throws IOException {
+      this.file = file;
+      final File directory = file.getAbsoluteFile().getParentFile();
+      sectionsFile = Files.createTempFile(directory.toPath(), file.getName(), ".sections").toFile();
+      sections = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sectionsFile)));
+    }
+
+    public void add(String name, JsonElement json) throws IOException {
+      final JsonObject violations = getColumnarReport(json);
+      int section = NONE;
+      JsonElement value = json;
+      if (violations != null) {
+        section = sections.size();
+        writeSection(sections, violations, dictionary);
+        // the placeholder keeps the position of the report among the other properties
+        value = json.deepCopy();
+        value.getAsJsonObject().add(ReportUtils.REPORT, JsonNull.INSTANCE);
+      }
+      directory.add(new int[] {intern(name, dictionary), intern(value.toString(), dictionary), section});
+    }
+
+    public void add(String name, ViolationReport violations) throws IOException {
+      final int section = sections.size();
+      writeSection(sections, violations, dictionary);
+      final JsonObject placeholder = new JsonObject();
+      placeholder.add(ReportUtils.REPORT, JsonNull.INSTANCE);
+      placeholder.add(ReportUtils.METRICS, violations.getMetrics());
+      directory.add(new int[] {intern(name, dictionary), intern(placeholder.toString(), dictionary), section});
+    }
+
+    /**
+     * Copies the part of another report as it is stored there, its columns are not turned into json.
+     */
+    public void add(String name, BinaryReport report) throws IOException {
+      final int entry = report.findEntry(name);
+      if (entry == NONE) {
+        return;
+      }
+      int section = NONE;
+      if (report.buffer.getInt(report.entries + 12 * entry + 8) != NONE) {
+        section = sections.size();
+        writeSection(sections, report.getViolationReport(name), dictionary);
+      }
+      final String json = report.getString(report.buffer.getInt(report.entries + 12 * entry + 4));
+      directory.add(new int[] {intern(name, dictionary), intern(json, dictionary), section});
+    }
+
+    /**
+     * Assembles the report next to the file and moves it in place.
+     */
+    public void commit() throws IOException {
+      sections.close();
+      final File part = Files.createTempFile(sectionsFile.getParentFile().toPath(), file.getName(), ".part")
+          .toFile();
+      try {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(part)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT);
+          out.writeInt(dictionary.size());
+          // the strings are encoded twice instead of being held encoded as well
+          int offset = 0;
+          for (final String string : dictionary.keySet()) {
+            out.writeInt(offset);
+            offset += string.getBytes(StandardCharsets.UTF_8).length;
+          }
+          out.writeInt(offset);
+          for (final String string : dictionary.keySet()) {
+            out.write(string.getBytes(StandardCharsets.UTF_8));
+          }
+
+          out.writeInt(directory.size());
+          final int sectionsStart = out.size() + 12 * directory.size();
+          for (final int[] entry : directory) {
+            out.writeInt(entry[0]);
+            out.writeInt(entry[1]);
+            out.writeInt(entry[2] == NONE ? NONE : sectionsStart + entry[2]);
+          }
+          Files.copy(sectionsFile.toPath(), out);
+        }
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(part.toPath());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      sections.close();
+      Files.deleteIfExists(sectionsFile.toPath());
+    }
+  }
+}
@@ -9,11 +9,21 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import com.philips.bootcamp.domain.Constants;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import jdk.internal.org.jline.utils.Log;
 
 public class FileUtils {
@@ -42,29 +52,26 @@ public class FileUtils {
   }
 
   public static void writeFileContents(File file, String contents) {
-    boolean result = false ;
     try {
       final String name = file.getName();
       if (!file.exists() && name != null && name.length() > 0) {
-        result  = file.createNewFile();
+        file.createNewFile();
       }
     } catch (final IOException ioe) {
       throw new IllegalArgumentException("[ERROR] Something went wrong during file creation!");
     }
 
-    if(result) {
-      if (file.isFile()) {
-        if (contents == null) {
-          contents = "";
-        }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-          writer.write(contents);
-        } catch (final IOException ioe) {
-          Log.debug("[ERROR] Couldn't write to file");
-        }
-      } else {
-        throw new IllegalArgumentException("[ERROR] Invalid file provided!");
+    if (file.isFile()) {
+      if (contents == null) {
+        contents = "";
+      }
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+        writer.write(contents);
+      } catch (final IOException ioe) {
+        Log.debug("[ERROR] Couldn't write to file");
       }
+    } else {
+      throw new IllegalArgumentException("[ERROR] Invalid file provided!");
     }
   }
 
@@ -81,22 +88,75 @@ public class FileUtils {
     }
   }
 
-  public static void deleteFolder(File directory) {
-    if (directory == null || !directory.exists()) {
-      return;
+  public static List<File> listFiles(File directory, Collection<String> extensions) {
+    final List<File> files = new ArrayList<>();
+    if (directory == null || !directory.isDirectory()) {
+      return files;
     }
 
-    final StringBuilder command = new StringBuilder();
-    command.append("\"" + new File(Constants.toolsDirectory, "rdir.bat").getAbsolutePath() + "\"");
-    command.append(" \"" + directory.getAbsolutePath() + "\"");
-    TerminalUtils.run(command.toString());
+    try {
+      Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          final Path name = dir.getFileName();
+          if (name != null && name.toString().startsWith(".") && !dir.equals(directory.toPath())) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (attrs.isRegularFile() && hasExtension(file.toFile(), extensions)) {
+            files.add(file.toFile().getAbsoluteFile());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (final IOException ioe) {
+      Log.debug("[ERROR] Couldn't list files of directory");
+    }
+    return files;
   }
 
-  public static void renameFile(File file, String newName) {
-    final StringBuilder command = new StringBuilder();
-    command.append("\"" + new File(Constants.toolsDirectory, "rename.bat").getAbsolutePath() + "\"");
-    command.append(" \"" + file.getAbsolutePath() + "\"");
-    command.append(" \"" + newName + "\"");
-    TerminalUtils.run(command.toString());
+  public static List<File> filterFiles(List<File> candidates, Collection<String> extensions) {
+    final List<File> files = new ArrayList<>();
+    for (final File file : candidates) {
+      if (file.isFile() && hasExtension(file, extensions)) {
+        files.add(file.getAbsoluteFile());
+      }
+    }
+    return files;
+  }
+
+  public static boolean hasExtension(File file, Collection<String> extensions) {
+    final String name = file.getName();
+    final int indexOfLastPeriod = name.lastIndexOf('.');
+    return indexOfLastPeriod != -1 && extensions.contains(name.substring(indexOfLastPeriod + 1));
+  }
+
+  /**
+   * Moves the folder into the {@link Trash}, which deletes it in the background.
+   */
+  public static void deleteFolder(File directory) {
+    Trash.getDefault().delete(directory);
+  }
+
+  /**
+   * Copies length bytes of the file starting at offset to the stream without loading them into memory.
+   */
+  public static void copyRange(File file, long offset, long length, OutputStream os) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final WritableByteChannel target = Channels.newChannel(os);
+      long position = offset;
+      final long end = offset + length;
+      while (position < end) {
+        final long transferred = channel.transferTo(position, end - position, target);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
+      }
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,283 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GitUtils {
+  public static final String WORKTREE = "worktree";
+  public static final String FULL = "full";
+  public static final String SHALLOW = "shallow";
+  public static final String PARTIAL = "partial";
+  public static final String CLONE_MODE = System.getProperty("fences.git.cloneMode", WORKTREE);
+  public static final long GIT_TIMEOUT_MILLIS = Long.getLong("fences.git.timeoutMillis", 1800000L);
+
+  // updates of one mirror are serialized on it
+  private static final Map<String, Object> MIRROR_LOCKS = new ConcurrentHashMap<>();
+
+  private GitUtils() {
+
+  }
+
+  public static String getHeadCommit(File repository) {
+    final String output = getOutput(repository, "rev-parse", "HEAD");
+    if (output == null || output.trim().isEmpty()) {
+      return null;
+    }
+    return output.trim();
+  }
+
+  /**
+   * Lists the files that differ between the given commit and HEAD, or null when git cannot tell,
+   * e.g. because the commit is no longer part of the history.
+   */
+  public static ChangeSet getChangesSince(File repository, String commit) {
+    if (repository == null || commit == null) {
+      return null;
+    }
+
+    final String output = getOutput(repository, "diff", "--name-status", "-z", "-M", commit, "HEAD");
+    if (output == null) {
+      return null;
+    }
+
+    final File root = repository.getAbsoluteFile();
+    final ChangeSet changes = new ChangeSet();
+    final String[] tokens = output.split("\0");
+    int index = 0;
+    while (index < tokens.length) {
+      final String status = tokens[index++];
+      if (status.isEmpty() || index >= tokens.length) {
+        continue;
+      }
+
+      switch (status.charAt(0)) {
+        case 'D':
+          changes.removed.add(new File(root, tokens[index++]).getAbsolutePath());
+          break;
+        case 'R':
+          changes.removed.add(new File(root, tokens[index++]).getAbsolutePath());
+          changes.changed.add(new File(root, tokens[index++]).getAbsolutePath());
+          break;
+        case 'C':
+          index++;
+          changes.changed.add(new File(root, tokens[index++]).getAbsolutePath());
+          break;
+        default:
+          changes.changed.add(new File(root, tokens[index++]).getAbsolutePath());
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Brings the workspace to the tip of the branch of the repository behind the link and removes
+   * everything git does not track. An existing workspace is fetched and reset, a new one is cloned
+   * from a local mirror of the repository, so only the mirror ever talks to the remote. Worktree
+   * workspaces share the objects of the mirror, the other modes clone it: shallow workspaces hold
+   * the tip only, partial ones load file contents when they are checked out.
+   * Returns null on success, or a message saying what failed.
+   */
+  public static String checkout(String link, String branch, File workspace, File mirrors, String mode) {
+    return checkout(link, branch, workspace, mirrors, mode, true);
+  }
+
+  /**
+   * Checks out a workspace that was deleted again, like {@link #checkout}, but from the mirror as it
+   * is. The remote is only fetched from when there is no mirror yet.
+   */
+  public static String restore(String link, String branch, File workspace, File mirrors, String mode) {
+    return checkout(link, branch, workspace, mirrors, mode, false);
+  }
+
+  private static String checkout(String link, String branch, File workspace, File mirrors, String mode,
+      boolean fetch) {
+    final File mirror = getMirror(mirrors, link);
+    if (WORKTREE.equals(mode)) {
+      synchronized (getLock(mirror)) {
+        final String mirrorResult = updateMirror(mirror, link, fetch);
+        return mirrorResult != null ? mirrorResult : checkoutWorktree(mirror, branch, workspace);
+      }
+    }
+
+    final String mirrorResult = updateMirror(mirror, link, fetch);
+    if (mirrorResult != null) {
+      return mirrorResult;
+    }
+
+    if (new File(workspace, ".git").isDirectory() && update(workspace, mirror, branch, mode)) {
+      return null;
+    }
+
+    deleteWorkspace(workspace);
+    final List<String> clone = new ArrayList<>(Arrays.asList("git", "clone", "--branch", branch));
+    addCloneMode(clone, mode);
+    clone.add(getUrl(mirror, mode));
+    clone.add(workspace.getAbsolutePath());
+    if (!git(null, clone)) {
+      deleteWorkspace(workspace);
+      return "Could not check out branch '" + branch + "'";
+    }
+    return null;
+  }
+
+  public static File getMirror(File mirrors, String link) {
+    final String name = StringUtils.getProjectNameFromHttpLink(link);
+    return new File(mirrors, (name == null ? "" : name + "-") + HashUtils.sha256(link).substring(0, 12) + ".git");
+  }
+
+  private static String updateMirror(File mirror, String link, boolean fetch) {
+    synchronized (getLock(mirror)) {
+      if (new File(mirror, "HEAD").isFile()) {
+        return !fetch || git(mirror, Arrays.asList("git", "fetch", "--prune", "origin")) ? null
+            : "Could not fetch " + link;
+      }
+
+      // cloned next to the mirror so that an interrupted clone is never taken for one
+      final File temp = new File(mirror.getParentFile(), mirror.getName() + ".part");
+      deleteQuietly(temp);
+      mirror.getParentFile().mkdirs();
+      if (!git(null, Arrays.asList("git", "clone", "--mirror", link, temp.getAbsolutePath()))
+          || !git(temp, Arrays.asList("git", "config", "uploadpack.allowFilter", "true"))
+          || !temp.renameTo(mirror)) {
+        deleteQuietly(temp);
+        return "Could not clone " + link;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Deletes a workspace and, if it is a worktree, drops it from the worktrees of its mirror.
+   */
+  public static void deleteWorkspace(File workspace) {
+    final File common = getCommonDirectory(workspace);
+    FileUtils.deleteFolder(workspace);
+    if (common != null) {
+      git(common, Arrays.asList("git", "worktree", "prune"));
+    }
+  }
+
+  // worktrees see the refs of the mirror, so after the fetch they only need a reset to the branch
+  private static String checkoutWorktree(File mirror, String branch, File workspace) {
+    final String ref = "refs/heads/" + branch;
+    if (!git(mirror, Arrays.asList("git", "rev-parse", "--verify", "--quiet", ref + "^{commit}"))) {
+      return "Could not check out branch '" + branch + "'";
+    }
+
+    if (isSameFile(mirror, getCommonDirectory(workspace))
+        && git(workspace, Arrays.asList("git", "reset", "--hard", ref))
+        && git(workspace, Arrays.asList("git", "clean", "-ffdx"))) {
+      return null;
+    }
+
+    // detached, as the fetch into the mirror must not touch a checked out branch
+    deleteWorkspace(workspace);
+    git(mirror, Arrays.asList("git", "worktree", "prune"));
+    if (!git(mirror, Arrays.asList("git", "worktree", "add", "--force", "--detach",
+        workspace.getAbsolutePath(), ref))) {
+      deleteWorkspace(workspace);
+      return "Could not check out branch '" + branch + "'";
+    }
+    return null;
+  }
+
+  // the repository a worktree belongs to, or null if the workspace is no worktree
+  private static File getCommonDirectory(File workspace) {
+    if (!new File(workspace, ".git").isFile()) {
+      return null;
+    }
+    final String output = getOutput(workspace, "rev-parse", "--git-common-dir");
+    if (output == null || output.trim().isEmpty()) {
+      return null;
+    }
+    final File common = new File(output.trim());
+    return common.isAbsolute() ? common : new File(workspace, output.trim());
+  }
+
+  private static boolean isSameFile(File file, File other) {
+    try {
+      return other != null && file.getCanonicalFile().equals(other.getCanonicalFile());
+    } catch (final IOException ioe) {
+      return false;
+    }
+  }
+
+  private static Object getLock(File mirror) {
+    return MIRROR_LOCKS.computeIfAbsent(mirror.getAbsolutePath(), path -> new Object());
+  }
+
+  // false when the workspace could not be brought up to date and has to be cloned again
+  private static boolean update(File workspace, File mirror, String branch, String mode) {
+    final List<String> fetch = new ArrayList<>(Arrays.asList("git", "fetch"));
+    if (SHALLOW.equals(mode)) {
+      fetch.add("--depth=1");
+    }
+    fetch.add("origin");
+    fetch.add("+refs/heads/" + branch + ":refs/remotes/origin/" + branch);
+
+    return git(workspace, Arrays.asList("git", "remote", "set-url", "origin", getUrl(mirror, mode)))
+        && git(workspace, fetch)
+        && git(workspace, Arrays.asList("git", "checkout", "--force", "-B", branch, "refs/remotes/origin/" + branch))
+        && git(workspace, Arrays.asList("git", "reset", "--hard", "refs/remotes/origin/" + branch))
+        && git(workspace, Arrays.asList("git", "clean", "-ffdx"));
+  }
+
+  private static void addCloneMode(List<String> command, String mode) {
+    if (SHALLOW.equals(mode)) {
+      command.add("--depth=1");
+    } else if (PARTIAL.equals(mode)) {
+      command.add("--filter=blob:none");
+    }
+  }
+
+  // git only honours depth and filters for file urls, a plain path hard links the objects instead
+  private static String getUrl(File mirror, String mode) {
+    return FULL.equals(mode) ? mirror.getAbsolutePath() : mirror.toPath().toUri().toString();
+  }
+
+  private static void deleteQuietly(File directory) {
+    try {
+      FileUtils.deleteDirectoryRecursion(directory.toPath());
+    } catch (final IOException ioe) {
+      // whatever is left is replaced by the next clone
+    }
+  }
+
+  private static boolean git(File directory, List<String> command) {
+    final ProcessResult result = ProcessRunner.run(directory, command, GIT_TIMEOUT_MILLIS);
+    return result != null && result.isSuccess();
+  }
+
+  // the complete stdout of the git command, or null unless it succeeded in time
+  private static String getOutput(File directory, String... arguments) {
+    final List<String> command = new ArrayList<>();
+    command.add("git");
+    command.addAll(Arrays.asList(arguments));
+    final ProcessResult result = ProcessRunner.run(directory, command, GIT_TIMEOUT_MILLIS);
+    return result != null && result.isSuccess() && !result.isTruncated() ? result.getStdout() : null;
+  }
+
+  public static final class ChangeSet {
+    final Set<String> changed = new LinkedHashSet<>();
+    final Set<String> removed = new LinkedHashSet<>();
+
+    public Set<String> getChanged() {
+      return Collections.unmodifiableSet(changed);
+    }
+
+    public Set<String> getRemoved() {
+      return Collections.unmodifiableSet(removed);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtils {
+
+  private HashUtils() {
+
+  }
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("[ERROR] SHA-256 not supported", e);
+    }
+  }
+
+  public static String sha256(String contents) {
+    if (contents == null) {
+      throw new IllegalArgumentException("[ERROR] Null argument(s)");
+    }
+    return toHex(newDigest().digest(contents.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static String sha256(byte[] contents) {
+    if (contents == null) {
+      throw new IllegalArgumentException("[ERROR] Null argument(s)");
+    }
+    return toHex(newDigest().digest(contents));
+  }
+
+  public static void update(MessageDigest digest, InputStream is) throws IOException {
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) != -1) {
+      digest.update(buffer, 0, read);
+    }
+  }
+
+  public static String toHex(byte[] bytes) {
+    final StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
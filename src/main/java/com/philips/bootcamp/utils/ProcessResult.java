@@ -0,0 +1,50 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+public class ProcessResult {
+  private final int exitCode;
+  private final String stdout;
+  private final String stderr;
+  private final boolean truncated;
+  private final boolean timedOut;
+
+  public ProcessResult(int exitCode, String stdout, String stderr, boolean truncated, boolean timedOut) {
+    this.exitCode = exitCode;
+    this.stdout = stdout;
+    this.stderr = stderr;
+    this.truncated = truncated;
+    this.timedOut = timedOut;
+  }
+
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  public boolean isSuccess() {
+    return exitCode == 0 && !timedOut;
+  }
+
+  /**
+   * Tells whether the process was killed, with all its descendants, for running past its timeout.
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+  public String getStdout() {
+    return stdout;
+  }
+
+  public String getStderr() {
+    return stderr;
+  }
+
+  /**
+   * Tells whether stdout or stderr was longer than the buffer and lost its end.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+}
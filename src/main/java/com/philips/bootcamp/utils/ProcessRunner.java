@@ -0,0 +1,193 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs child processes from an argument list. Both output streams are always drained, stderr on a
+ * pump thread, so a chatty child can never block on a full pipe. No more than MAX_PROCESSES
+ * children run at a time, further callers wait for a slot. Timeouts and interrupts kill the whole
+ * process tree.
+ */
+public class ProcessRunner {
+  public static final int MAX_PROCESSES =
+      Integer.getInteger("fences.processes.max", 2 * Runtime.getRuntime().availableProcessors());
+  public static final int MAX_OUTPUT = Integer.getInteger("fences.processes.maxOutput", 8 * 1024 * 1024);
+
+  private static final long PUMP_GRACE_MILLIS = 5000;
+
+  private static final Semaphore SLOTS = new Semaphore(MAX_PROCESSES, true);
+  private static final ExecutorService THREADS = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+  private ProcessRunner() {
+
+  }
+
+  /**
+   * Runs the command and collects both streams into buffers of at most MAX_OUTPUT characters. A
+   * positive timeout kills the process tree once it has passed. Returns null when the process could
+   * not be started or the caller was interrupted.
+   */
+  public static ProcessResult run(File directory, List<String> command, long timeoutMillis) {
+    final BoundedBuffer stdout = new BoundedBuffer();
+    final BoundedBuffer stderr = new BoundedBuffer();
+    final ProcessResult result = run(directory, command, stdout, stderr, timeoutMillis);
+    if (result == null) {
+      return null;
+    }
+    return new ProcessResult(result.getExitCode(), stdout.toString(), stderr.toString(),
+        stdout.truncated || stderr.truncated, result.isTimedOut());
+  }
+
+  /**
+   * Runs the command and hands every line to the sinks as it arrives, the returned result carries
+   * no output. A null stderr sink merges stderr into stdout. An interrupt of the caller kills the
+   * process tree like a passed timeout does, but returns null.
+   */
+  public static ProcessResult run(File directory, List<String> command, Consumer<String> stdout,
+      Consumer<String> stderr, long timeoutMillis) {
+    try {
+      SLOTS.acquire();
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    Process process = null;
+    try {
+      process = new ProcessBuilder(command)
+          .directory(directory)
+          .redirectErrorStream(stderr == null)
+          .start();
+      process.getOutputStream().close();
+
+      // both streams are pumped on other threads so this one can wait for the exit interruptibly
+      final Process started = process;
+      final Future<?> output = THREADS.submit(() -> drain(started.getInputStream(), stdout));
+      final Future<?> errors = stderr == null ? null
+          : THREADS.submit(() -> drain(started.getErrorStream(), stderr));
+
+      final boolean exited;
+      if (timeoutMillis > 0) {
+        exited = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+      } else {
+        process.waitFor();
+        exited = true;
+      }
+      if (!exited) {
+        destroyTree(process);
+      }
+
+      awaitPump(output, process);
+      awaitPump(errors, process);
+      return new ProcessResult(exited ? process.exitValue() : -1, null, null, false, !exited);
+    } catch (final IOException ioe) {
+      return null;
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      if (process != null && process.isAlive()) {
+        destroyTree(process);
+      }
+      SLOTS.release();
+    }
+  }
+
+  public static CompletableFuture<ProcessResult> runAsync(File directory, List<String> command,
+      long timeoutMillis) {
+    return CompletableFuture.supplyAsync(() -> run(directory, command, timeoutMillis), THREADS);
+  }
+
+  /**
+   * Kills the process and everything it started, children first so none of them is orphaned.
+   */
+  public static void destroyTree(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  // a grandchild may hold the pipe open after the child exited, so it is killed after a grace period
+  private static void awaitPump(Future<?> pump, Process process) throws InterruptedException {
+    if (pump == null) {
+      return;
+    }
+    try {
+      pump.get(PUMP_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException te) {
+      destroyTree(process);
+      pump.cancel(true);
+    } catch (final ExecutionException ee) {
+      // the stream broke, what was read so far is all there is
+    }
+  }
+
+  public static int getRunning() {
+    return MAX_PROCESSES - SLOTS.availablePermits();
+  }
+
+  private static Void drain(InputStream is, Consumer<String> sink) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        sink.accept(line);
+      }
+    }
+    return null;
+  }
+
+  private static final class BoundedBuffer implements Consumer<String> {
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean truncated;
+
+    @Override
+    public void accept(String line) {
+      if (truncated) {
+        return;
+      }
+      if (buffer.length() > 0) {
+        buffer.append('\n');
+      }
+      if (buffer.length() + line.length() > MAX_OUTPUT) {
+        buffer.append(line, 0, Math.max(0, MAX_OUTPUT - buffer.length()));
+        truncated = true;
+        return;
+      }
+      buffer.append(line);
+    }
+
+    @Override
+    public String toString() {
+      return buffer.toString();
+    }
+  }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable, "process-runner-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
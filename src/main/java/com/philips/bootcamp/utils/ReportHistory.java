@@ -0,0 +1,483 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.philips.bootcamp.domain.ViolationReport;
+
+/**
+ * Append-only history of the reports of one project. Every run is appended to a log as the files
+ * whose violations changed since the run before, every few runs as a full snapshot instead. An index
+ * with one line per run holds where its record starts and the errors per tool, so the trend is
+ * read from the index alone and a past report needs at most one snapshot and the deltas after it.
+ * Once the history holds more runs than it may keep, the oldest are compacted away.
+ */
+public class ReportHistory {
+  public static final int SNAPSHOT_INTERVAL = Integer.getInteger("fences.history.snapshotInterval", 10);
+  public static final int MAX_RUNS = Integer.getInteger("fences.history.maxRuns", 500);
+
+  static final String LOG = "history.log";
+  static final String INDEX = "history.idx";
+  private static final String PART = ".part";
+  private static final String RUN = "run";
+  private static final String TIME = "time";
+  private static final String COMMIT = "commit";
+  private static final String SNAPSHOT = "snapshot";
+  private static final String OFFSET = "offset";
+  private static final String LENGTH = "length";
+  private static final String ERRORS = "errors";
+  private static final String TOOLS = "tools";
+  private static final String FILES = "files";
+  private static final String REMOVED = "removed";
+  private static final String VALUE = "value";
+  private static final Gson GSON = new Gson();
+
+  private final File directory;
+  private final int snapshotInterval;
+  private final int maxRuns;
+  private List<JsonObject> index;
+  private JsonObject lastReport;
+  private Map<String, ViolationReport> lastViolations = new HashMap<>();
+
+  public ReportHistory(File directory) {
+    this(directory, SNAPSHOT_INTERVAL, MAX_RUNS);
+  }
+
+  public ReportHistory(File directory, int snapshotInterval, int maxRuns) {
+    this.directory = directory;
+    this.snapshotInterval = Math.max(1, snapshotInterval);
+    this.maxRuns = maxRuns;
+  }
+
+  /**
+   * Appends the report of a finished run and returns its number.
+   */
+  public int append(JsonObject report, String commit) throws IOException {
+    return append(report, Collections.<String, ViolationReport>emptyMap(), commit);
+  }
+
+  /**
+   * Appends a report whose violations of the given tools are held as typed reports, the report
+   * has a placeholder for each of them. Returns the number of the run.
+   */
+  public synchronized int append(JsonObject report, Map<String, ViolationReport> violationReports, String commit)
+      throws IOException {
+    load();
+    final int run = index.isEmpty() ? 1 : index.get(index.size() - 1).get(RUN).getAsInt() + 1;
+    final boolean snapshot = lastReport == null || run - getSnapshotRun(index.size() - 1) >= snapshotInterval;
+
+    // the record is streamed onto the log, a record cut short is never referenced by the index
+    directory.mkdirs();
+    final File log = new File(directory, LOG);
+    final long offset = log.length();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log, true),
+        StandardCharsets.UTF_8))) {
+      final JsonWriter out = new JsonWriter(writer);
+      if (snapshot) {
+        writeSnapshot(out, report, violationReports);
+      } else {
+        writeDelta(out, report, violationReports);
+      }
+      out.flush();
+      writer.write('\n');
+    }
+    final long length = log.length() - offset;
+
+    final JsonObject entry = new JsonObject();
+    entry.addProperty(RUN, run);
+    entry.addProperty(TIME, System.currentTimeMillis());
+    entry.addProperty(COMMIT, commit);
+    entry.addProperty(SNAPSHOT, snapshot);
+    entry.addProperty(OFFSET, offset);
+    entry.addProperty(LENGTH, length);
+    entry.add(ERRORS, getErrors(report, violationReports));
+    append(new File(directory, INDEX), (entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+    index.add(entry);
+    setLastReport(report.deepCopy(), violationReports);
+
+    if (maxRuns > 0 && index.size() > maxRuns + snapshotInterval) {
+      compact(maxRuns);
+    }
+    return run;
+  }
+
+  /**
+   * Returns the runs, oldest first, with their time, commit and errors per tool.
+   */
+  public synchronized JsonArray getRuns() throws IOException {
+    load();
+    final JsonArray runs = new JsonArray();
+    for (final JsonObject entry : index) {
+      final JsonObject run = new JsonObject();
+      run.add(RUN, entry.get(RUN));
+      run.add(TIME, entry.get(TIME));
+      run.add(COMMIT, entry.get(COMMIT));
+      run.add(ERRORS, entry.get(ERRORS));
+      runs.add(run);
+    }
+    return runs;
+  }
+
+  /**
+   * Returns the report as of the given run, or null if the run is not or no longer kept.
+   */
+  public synchronized JsonObject getReport(int run) throws IOException {
+    load();
+    final int position = find(run);
+    if (position < 0) {
+      return null;
+    }
+
+    int start = position;
+    while (!index.get(start).get(SNAPSHOT).getAsBoolean()) {
+      start--;
+    }
+    try (RandomAccessFile log = new RandomAccessFile(new File(directory, LOG), "r")) {
+      JsonObject report = read(log, index.get(start));
+      for (int i = start + 1; i <= position; i++) {
+        report = apply(report, read(log, index.get(i)));
+      }
+      return report;
+    }
+  }
+
+  /**
+   * Drops all but the given number of latest runs. The oldest run kept becomes a snapshot.
+   */
+  public synchronized void compact(int keep) throws IOException {
+    load();
+    if (index.size() <= keep) {
+      return;
+    }
+
+    final int first = index.size() - keep;
+    final JsonObject firstReport = keep == 0 ? null : getReport(index.get(first).get(RUN).getAsInt());
+    final File log = new File(directory, LOG);
+    final File logPart = new File(directory, LOG + PART);
+    final File indexPart = new File(directory, INDEX + PART);
+    final List<JsonObject> kept = new ArrayList<>();
+
+    try (RandomAccessFile source = new RandomAccessFile(log, "r");
+        OutputStream logOut = new FileOutputStream(logPart);
+        OutputStream indexOut = new FileOutputStream(indexPart)) {
+      long offset = 0;
+      for (int i = first; i < index.size(); i++) {
+        final JsonObject entry = index.get(i).deepCopy();
+        final byte[] bytes = i == first ? (firstReport.toString() + "\n").getBytes(StandardCharsets.UTF_8)
+            : readBytes(source, entry);
+        entry.addProperty(SNAPSHOT, i == first || entry.get(SNAPSHOT).getAsBoolean());
+        entry.addProperty(OFFSET, offset);
+        entry.addProperty(LENGTH, bytes.length);
+        logOut.write(bytes);
+        indexOut.write((entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        offset += bytes.length;
+        kept.add(entry);
+      }
+    }
+
+    // the log is moved first, an index part left behind by a crash is completed by load
+    Files.move(logPart.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.move(indexPart.toPath(), new File(directory, INDEX).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    index = kept;
+    if (kept.isEmpty()) {
+      setLastReport(null, Collections.<String, ViolationReport>emptyMap());
+    }
+  }
+
+  /**
+   * Describes the report as the files whose violations changed since the previous report, per tool.
+   * Tools without per file violations are stored whole.
+   */
+  static JsonObject diff(JsonObject previous, JsonObject report) {
+    final JsonObject tools = new JsonObject();
+    for (final Map.Entry<String, JsonElement> entry : report.entrySet()) {
+      tools.add(entry.getKey(), diff(previous.get(entry.getKey()), entry.getValue()));
+    }
+
+    final JsonObject delta = new JsonObject();
+    delta.add(TOOLS, tools);
+    return delta;
+  }
+
+  private static JsonObject diff(JsonElement before, JsonElement after) {
+    final JsonObject tool = new JsonObject();
+    if (hasViolations(before) && hasViolations(after)) {
+      final JsonObject beforeFiles = before.getAsJsonObject().get(ReportUtils.REPORT).getAsJsonObject();
+      final JsonObject afterFiles = after.getAsJsonObject().get(ReportUtils.REPORT).getAsJsonObject();
+      final JsonObject changed = new JsonObject();
+      for (final Map.Entry<String, JsonElement> file : afterFiles.entrySet()) {
+        if (!file.getValue().equals(beforeFiles.get(file.getKey()))) {
+          changed.add(file.getKey(), file.getValue());
+        }
+      }
+      final JsonArray removed = new JsonArray();
+      for (final String file : beforeFiles.keySet()) {
+        if (!afterFiles.has(file)) {
+          removed.add(file);
+        }
+      }
+      final JsonObject rest = after.deepCopy().getAsJsonObject();
+      rest.remove(ReportUtils.REPORT);
+      tool.add(FILES, changed);
+      tool.add(REMOVED, removed);
+      tool.add(VALUE, rest);
+    } else {
+      tool.add(VALUE, after);
+    }
+    return tool;
+  }
+
+  /**
+   * Rebuilds a report from the report before it and its delta. Files keep the order of the
+   * previous report, new files follow in the order they were reported.
+   */
+  static JsonObject apply(JsonObject previous, JsonObject delta) {
+    final JsonObject report = new JsonObject();
+    for (final Map.Entry<String, JsonElement> entry : delta.get(TOOLS).getAsJsonObject().entrySet()) {
+      final JsonObject tool = entry.getValue().getAsJsonObject();
+      if (!tool.has(FILES)) {
+        report.add(entry.getKey(), tool.get(VALUE));
+        continue;
+      }
+
+      final JsonObject files = new JsonObject();
+      final JsonObject changed = tool.get(FILES).getAsJsonObject();
+      final Set<String> removed = new HashSet<>();
+      for (final JsonElement file : tool.get(REMOVED).getAsJsonArray()) {
+        removed.add(file.getAsString());
+      }
+      final JsonObject before = previous.get(entry.getKey()).getAsJsonObject().get(ReportUtils.REPORT).getAsJsonObject();
+      for (final Map.Entry<String, JsonElement> file : before.entrySet()) {
+        if (!removed.contains(file.getKey())) {
+          files.add(file.getKey(), changed.has(file.getKey()) ? changed.get(file.getKey()) : file.getValue());
+        }
+      }
+      for (final Map.Entry<String, JsonElement> file : changed.entrySet()) {
+        files.add(file.getKey(), file.getValue());
+      }
+
+      final JsonObject value = new JsonObject();
+      value.add(ReportUtils.REPORT, files);
+      for (final Map.Entry<String, JsonElement> property : tool.get(VALUE).getAsJsonObject().entrySet()) {
+        value.add(property.getKey(), property.getValue());
+      }
+      report.add(entry.getKey(), value);
+    }
+    return report;
+  }
+
+  private void writeSnapshot(JsonWriter out, JsonObject report, Map<String, ViolationReport> violationReports)
+      throws IOException {
+    out.beginObject();
+    for (final Map.Entry<String, JsonElement> entry : report.entrySet()) {
+      out.name(entry.getKey());
+      final ViolationReport violations = violationReports.get(entry.getKey());
+      if (violations != null) {
+        violations.write(out);
+      } else {
+        GSON.toJson(entry.getValue(), out);
+      }
+    }
+    out.endObject();
+  }
+
+  // typed reports are compared file by file without turning them into json
+  private void writeDelta(JsonWriter out, JsonObject report, Map<String, ViolationReport> violationReports)
+      throws IOException {
+    out.beginObject().name(TOOLS).beginObject();
+    for (final Map.Entry<String, JsonElement> entry : report.entrySet()) {
+      out.name(entry.getKey());
+      final ViolationReport after = violationReports.get(entry.getKey());
+      ViolationReport before = lastViolations.get(entry.getKey());
+      if (after == null) {
+        final JsonElement last = before == null ? lastReport.get(entry.getKey()) : before.toJson();
+        GSON.toJson(diff(last, entry.getValue()), out);
+        continue;
+      }
+
+      // a report read back from the log holds its violations as json
+      if (before == null && hasViolations(lastReport.get(entry.getKey()))) {
+        before = ViolationReport.fromJson(lastReport.get(entry.getKey()).getAsJsonObject());
+      }
+      if (before == null) {
+        out.beginObject().name(VALUE);
+        after.write(out);
+        out.endObject();
+      } else {
+        out.beginObject().name(FILES).beginObject();
+        for (int file = 0; file < after.getFileCount(); file++) {
+          if (!isSame(before, after, file)) {
+            out.name(after.getFile(file));
+            after.writeViolations(out, file);
+          }
+        }
+        out.endObject().name(REMOVED).beginArray();
+        for (int file = 0; file < before.getFileCount(); file++) {
+          if (after.indexOf(before.getFile(file)) < 0) {
+            out.value(before.getFile(file));
+          }
+        }
+        out.endArray().name(VALUE);
+        GSON.toJson(getRest(after), out);
+        out.endObject();
+      }
+    }
+    out.endObject().endObject();
+  }
+
+  private static boolean isSame(ViolationReport before, ViolationReport after, int file) {
+    final int beforeFile = before.indexOf(after.getFile(file));
+    if (beforeFile < 0 || before.getEnd(beforeFile) - before.getStart(beforeFile)
+        != after.getEnd(file) - after.getStart(file)) {
+      return false;
+    }
+    for (int i = 0; i < after.getEnd(file) - after.getStart(file); i++) {
+      if (!after.equals(after.getStart(file) + i, before, before.getStart(beforeFile) + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static JsonObject getRest(ViolationReport violations) {
+    final JsonObject rest = new JsonObject();
+    rest.add(ReportUtils.METRICS, violations.getMetrics());
+    return rest;
+  }
+
+  private void setLastReport(JsonObject report, Map<String, ViolationReport> violationReports) {
+    lastReport = report;
+    lastViolations = new HashMap<>(violationReports);
+  }
+
+  private void load() throws IOException {
+    if (index != null) {
+      return;
+    }
+
+    final File indexFile = new File(directory, INDEX);
+    final File logPart = new File(directory, LOG + PART);
+    final File indexPart = new File(directory, INDEX + PART);
+    if (indexPart.exists() && !logPart.exists()) {
+      Files.move(indexPart.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.deleteIfExists(logPart.toPath());
+    Files.deleteIfExists(indexPart.toPath());
+
+    final List<JsonObject> entries = new ArrayList<>();
+    boolean damaged = false;
+    if (indexFile.exists()) {
+      final JsonParser parser = new JsonParser();
+      try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+        String line;
+        while (!damaged && (line = reader.readLine()) != null) {
+          try {
+            entries.add(parser.parse(line).getAsJsonObject());
+          } catch (final RuntimeException e) {
+            damaged = true;
+          }
+        }
+      }
+    }
+
+    // a line cut short by a crash ends the history, it is cut off so that appends start on a new line
+    if (damaged) {
+      try (OutputStream out = new FileOutputStream(indexPart)) {
+        for (final JsonObject entry : entries) {
+          out.write((entry.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      Files.move(indexPart.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    index = entries;
+    if (!index.isEmpty()) {
+      setLastReport(getReport(index.get(index.size() - 1).get(RUN).getAsInt()),
+          Collections.<String, ViolationReport>emptyMap());
+    }
+  }
+
+  private int find(int run) {
+    int low = 0;
+    int high = index.size() - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int found = index.get(middle).get(RUN).getAsInt();
+      if (found == run) {
+        return middle;
+      } else if (found < run) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return -1;
+  }
+
+  private int getSnapshotRun(int position) {
+    int i = position;
+    while (i > 0 && !index.get(i).get(SNAPSHOT).getAsBoolean()) {
+      i--;
+    }
+    return index.get(i).get(RUN).getAsInt();
+  }
+
+  private static JsonObject getErrors(JsonObject report, Map<String, ViolationReport> violationReports) {
+    final JsonObject errors = new JsonObject();
+    for (final Map.Entry<String, JsonElement> entry : report.entrySet()) {
+      if (violationReports.containsKey(entry.getKey())) {
+        errors.addProperty(entry.getKey(), violationReports.get(entry.getKey()).size());
+      } else if (entry.getValue().isJsonObject() && entry.getValue().getAsJsonObject().has(ReportUtils.METRICS)) {
+        errors.add(entry.getKey(), entry.getValue().getAsJsonObject().get(ReportUtils.METRICS)
+            .getAsJsonObject().get(ReportUtils.ERRORS));
+      }
+    }
+    return errors;
+  }
+
+  private static boolean hasViolations(JsonElement tool) {
+    return tool != null && tool.isJsonObject() && tool.getAsJsonObject().has(ReportUtils.REPORT)
+        && tool.getAsJsonObject().get(ReportUtils.REPORT).isJsonObject();
+  }
+
+  private static JsonObject read(RandomAccessFile log, JsonObject entry) throws IOException {
+    return new JsonParser().parse(new String(readBytes(log, entry), StandardCharsets.UTF_8)).getAsJsonObject();
+  }
+
+  private static byte[] readBytes(RandomAccessFile log, JsonObject entry) throws IOException {
+    final byte[] bytes = new byte[entry.get(LENGTH).getAsInt()];
+    log.seek(entry.get(OFFSET).getAsLong());
+    log.readFully(bytes);
+    return bytes;
+  }
+
+  private static void append(File file, byte[] bytes) throws IOException {
+    try (OutputStream out = new FileOutputStream(file, true)) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.philips.bootcamp.domain.ViolationReport;
+
+public class ReportUtils {
+  public static final String FILES = "files";
+  public static final String REPORT = "report";
+  public static final String METRICS = "metrics";
+  public static final String ERRORS = "errors";
+  public static final String LINE = "line";
+  public static final String RULE = "rule";
+  public static final String MESSAGE = "message";
+  public static final String CONTEXT = "context";
+  public static final int MAX_LISTED = Integer.getInteger("fences.compare.maxListed", 1000);
+
+  private ReportUtils() {
+
+  }
+
+  /**
+   * Returns the files a tool run is restricted to, or null when the whole project is to be analyzed.
+   */
+  public static List<File> getFiles(JsonObject settings) {
+    final JsonElement files = settings.get(FILES);
+    if (files == null || !files.isJsonArray()) {
+      return null;
+    }
+
+    final List<File> list = new ArrayList<>();
+    for (final JsonElement file : files.getAsJsonArray()) {
+      list.add(new File(file.getAsString()));
+    }
+    return list;
+  }
+
+  public static JsonArray toJsonArray(Iterable<String> strings) {
+    final JsonArray array = new JsonArray();
+    for (final String string : strings) {
+      array.add(string);
+    }
+    return array;
+  }
+
+  /**
+   * Folds the report of a partial run into the previous full report. Files that were analyzed again
+   * or no longer exist lose their old entries, everything else is carried over unchanged.
+   */
+  public static JsonObject merge(JsonObject previous, JsonObject partial, GitUtils.ChangeSet changes) {
+    if (previous == null || partial == null || changes == null) {
+      return partial;
+    }
+
+    final JsonObject report = new JsonObject();
+    int noOfErrors = 0;
+
+    for (final Map.Entry<String, JsonElement> entry : previous.get(REPORT).getAsJsonObject().entrySet()) {
+      if (changes.getChanged().contains(entry.getKey()) || changes.getRemoved().contains(entry.getKey())) {
+        continue;
+      }
+      report.add(entry.getKey(), entry.getValue());
+      noOfErrors += entry.getValue().getAsJsonArray().size();
+    }
+
+    for (final Map.Entry<String, JsonElement> entry : partial.get(REPORT).getAsJsonObject().entrySet()) {
+      report.add(entry.getKey(), entry.getValue());
+      noOfErrors += entry.getValue().getAsJsonArray().size();
+    }
+
+    final JsonObject metrics = new JsonObject();
+    metrics.addProperty(ERRORS, noOfErrors);
+
+    final JsonObject data = new JsonObject();
+    data.add(REPORT, report);
+    data.add(METRICS, metrics);
+    return data;
+  }
+
+  /**
+   * Joins the reports of disjoint sets of files into one, or returns null if any of them is null.
+   */
+  public static JsonObject combine(List<JsonObject> parts) {
+    final JsonObject report = new JsonObject();
+    int noOfErrors = 0;
+
+    for (final JsonObject part : parts) {
+      if (part == null) {
+        return null;
+      }
+      for (final Map.Entry<String, JsonElement> entry : part.get(REPORT).getAsJsonObject().entrySet()) {
+        report.add(entry.getKey(), entry.getValue());
+        noOfErrors += entry.getValue().getAsJsonArray().size();
+      }
+    }
+
+    final JsonObject metrics = new JsonObject();
+    metrics.addProperty(ERRORS, noOfErrors);
+
+    final JsonObject data = new JsonObject();
+    data.add(REPORT, report);
+    data.add(METRICS, metrics);
+    return data;
+  }
+
+  /**
+   * Returns the lines of a file, or no lines if it cannot be read.
+   */
+  public static List<String> readLines(File file) {
+    try {
+      return Arrays.asList(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).split("\\R", -1));
+    } catch (final IOException ioe) {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Hashes the code of a line and the lines around it without their indentation, so the hash of a
+   * violation stays the same when code above it is added or removed.
+   */
+  public static String getContext(List<String> lines, int line) {
+    final StringBuilder code = new StringBuilder();
+    for (int i = line - 2; i <= line; i++) {
+      if (i >= 0 && i < lines.size()) {
+        code.append(lines.get(i).trim());
+      }
+      code.append('\n');
+    }
+    return HashUtils.sha256(code.toString()).substring(0, 8);
+  }
+
+  /**
+   * Folds the violations of a partial run into the previous full report, like
+   * {@link #merge(JsonObject, JsonObject, GitUtils.ChangeSet)}.
+   */
+  public static ViolationReport merge(ViolationReport previous, ViolationReport partial,
+      GitUtils.ChangeSet changes) {
+    if (previous == null || partial == null || changes == null) {
+      return partial;
+    }
+
+    final ViolationReport report = new ViolationReport(partial.getLevelName());
+    for (int file = 0; file < previous.getFileCount(); file++) {
+      final String name = previous.getFile(file);
+      if (!changes.getChanged().contains(name) && !changes.getRemoved().contains(name)) {
+        report.addFile(name, previous, file);
+      }
+    }
+    for (int file = 0; file < partial.getFileCount(); file++) {
+      report.addFile(partial.getFile(file), partial, file);
+    }
+    return report;
+  }
+
+  /**
+   * Matches the violations of two reports as json, see {@link #diff(ViolationReport, ViolationReport)}.
+   * Violations with properties a {@link ViolationReport} does not hold are left out.
+   */
+  public static JsonObject diff(JsonObject futureReport, JsonObject pastReport) {
+    return diff(toViolationReport(futureReport), toViolationReport(pastReport));
+  }
+
+  /**
+   * Matches the violations of two reports by file, rule, message and context instead of line, and
+   * returns how many are new, fixed and unchanged, listing up to {@link #MAX_LISTED} of the new and
+   * fixed ones. Violations reported before contexts were recorded are matched by file and message.
+   */
+  public static JsonObject diff(ViolationReport futureReport, ViolationReport pastReport) {
+    final int[] pastFiles = getFiles(pastReport);
+    final int[] futureFiles = getFiles(futureReport);
+
+    final boolean[] matched = new boolean[pastReport.size()];
+    final Candidates byFingerprint = new Candidates(pastReport.size());
+    final Candidates byMessage = new Candidates(pastReport.size());
+    for (int i = pastReport.size() - 1; i >= 0; i--) {
+      byFingerprint.add(getFingerprint(pastReport, pastFiles[i], i), i);
+      if (pastReport.getContext(i) == null) {
+        byMessage.add(getMessageKey(pastReport, pastFiles[i], i), i);
+      }
+    }
+
+    final List<Integer> unmatched = new ArrayList<>();
+    boolean unmatchedLegacy = false;
+    int unchanged = 0;
+    for (int i = 0; i < futureReport.size(); i++) {
+      Integer past = byFingerprint.poll(getFingerprint(futureReport, futureFiles[i], i), matched);
+      if (past == null && !byMessage.isEmpty()) {
+        past = byMessage.poll(getMessageKey(futureReport, futureFiles[i], i), matched);
+      }
+      if (past == null) {
+        unmatched.add(i);
+        unmatchedLegacy |= futureReport.getContext(i) == null;
+      } else {
+        matched[past] = true;
+        unchanged++;
+      }
+    }
+
+    // new violations without a context may still be old ones that have one
+    if (unmatchedLegacy) {
+      final Candidates remaining = new Candidates(pastReport.size());
+      for (int i = pastReport.size() - 1; i >= 0; i--) {
+        if (!matched[i]) {
+          remaining.add(getMessageKey(pastReport, pastFiles[i], i), i);
+        }
+      }
+      final List<Integer> stillUnmatched = new ArrayList<>();
+      for (final int i : unmatched) {
+        final Integer past = futureReport.getContext(i) != null ? null
+            : remaining.poll(getMessageKey(futureReport, futureFiles[i], i), matched);
+        if (past == null) {
+          stillUnmatched.add(i);
+        } else {
+          matched[past] = true;
+          unchanged++;
+        }
+      }
+      unmatched.clear();
+      unmatched.addAll(stillUnmatched);
+    }
+
+    final JsonArray newViolations = new JsonArray();
+    for (final int i : unmatched) {
+      if (newViolations.size() < MAX_LISTED) {
+        newViolations.add(withFile(futureReport, futureFiles[i], i));
+      }
+    }
+    final JsonArray fixedViolations = new JsonArray();
+    int fixed = 0;
+    for (int i = 0; i < pastReport.size(); i++) {
+      if (!matched[i]) {
+        fixed++;
+        if (fixedViolations.size() < MAX_LISTED) {
+          fixedViolations.add(withFile(pastReport, pastFiles[i], i));
+        }
+      }
+    }
+
+    final JsonObject diff = new JsonObject();
+    diff.addProperty("new", unmatched.size());
+    diff.addProperty("fixed", fixed);
+    diff.addProperty("unchanged", unchanged);
+    diff.add("newViolations", newViolations);
+    diff.add("fixedViolations", fixedViolations);
+    return diff;
+  }
+
+  private static ViolationReport toViolationReport(JsonObject data) {
+    final ViolationReport report = ViolationReport.fromJson(data);
+    return report == null ? new ViolationReport("severity") : report;
+  }
+
+  // the file of every violation
+  private static int[] getFiles(ViolationReport report) {
+    final int[] files = new int[report.size()];
+    for (int file = 0; file < report.getFileCount(); file++) {
+      Arrays.fill(files, report.getStart(file), report.getEnd(file), file);
+    }
+    return files;
+  }
+
+  private static String getFingerprint(ViolationReport report, int file, int violation) {
+    return getMessageKey(report, file, violation) + "\n" + orEmpty(report.getRule(violation)) + "\n"
+        + orEmpty(report.getContext(violation));
+  }
+
+  // numbers in messages, like a line length, change without the violation changing
+  private static String getMessageKey(ViolationReport report, int file, int violation) {
+    final String name = report.getFile(file);
+    final String message = orEmpty(report.getMessage(violation));
+    final StringBuilder key = new StringBuilder(name.length() + message.length() + 1).append(name).append('\n');
+    char last = ' ';
+    for (int i = 0; i < message.length(); i++) {
+      char c = message.charAt(i);
+      if (Character.isDigit(c)) {
+        c = '#';
+      } else if (Character.isWhitespace(c)) {
+        c = ' ';
+      }
+      if (!(c == last && (c == '#' || c == ' '))) {
+        key.append(c);
+      }
+      last = c;
+    }
+    if (last == ' ' && key.charAt(key.length() - 1) == ' ') {
+      key.setLength(key.length() - 1);
+    }
+    return key.toString();
+  }
+
+  private static String orEmpty(String value) {
+    return value == null ? "" : value;
+  }
+
+  private static JsonObject withFile(ViolationReport report, int file, int violation) {
+    final JsonObject listed = new JsonObject();
+    listed.addProperty("file", report.getFile(file));
+    for (final Map.Entry<String, JsonElement> property : report.getViolation(violation).entrySet()) {
+      listed.add(property.getKey(), property.getValue());
+    }
+    return listed;
+  }
+
+  /**
+   * Past violations by key, chained through an array so that large reports need no collection per
+   * key. Violations are added last to first and handed out first to last.
+   */
+  private static final class Candidates {
+    private final Map<String, Integer> heads = new HashMap<>();
+    private final int[] next;
+
+    Candidates(int size) {
+      next = new int[size];
+    }
+
+    boolean isEmpty() {
+      return heads.isEmpty();
+    }
+
+    void add(String key, int violation) {
+      final Integer head = heads.put(key, violation);
+      next[violation] = head == null ? -1 : head;
+    }
+
+    Integer poll(String key, boolean[] matched) {
+      final Integer head = heads.get(key);
+      int candidate = head == null ? -1 : head;
+      while (candidate != -1 && matched[candidate]) {
+        candidate = next[candidate];
+      }
+      if (candidate == -1) {
+        heads.remove(key);
+        return null;
+      }
+      heads.put(key, next[candidate]);
+      return candidate;
+    }
+  }
+}
@@ -27,7 +27,9 @@ public class StreamUtils {
         return null;
       }
       final int length = fileContents.length();
-      fileContents.delete(length-1, length);
+      if (length > 0) {
+        fileContents.delete(length-1, length);
+      }
       return fileContents.toString();
     }
 
@@ -0,0 +1,189 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.gson.JsonObject;
+import com.philips.bootcamp.domain.Constants;
+
+/**
+ * Deletes folders without making the caller wait: a folder is renamed into the trash directory,
+ * which is instant on the same file system, and purged in the background by walking its tree on
+ * several threads. Whatever is still in the trash when the server starts is purged then.
+ */
+public class Trash {
+  public static final int PURGE_THREADS =
+      Integer.getInteger("fences.trash.purgeThreads", Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+  private static final Trash DEFAULT = new Trash(Constants.trashDirectory, PURGE_THREADS);
+
+  private final File directory;
+  private final ExecutorService purger = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "trash-purger");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final ForkJoinPool walkers;
+  private final AtomicLong counter = new AtomicLong(System.currentTimeMillis());
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicInteger purged = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicLong bytesReclaimed = new AtomicLong();
+
+  public Trash(File directory, int threads) {
+    this.directory = directory;
+    this.walkers = new ForkJoinPool(threads, pool -> {
+      final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("trash-walker-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+  }
+
+  public static Trash getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Removes the folder from its place at once and purges it in the background. Folders that
+   * cannot be moved into the trash, e.g. because they are on another file system, are deleted
+   * before this returns.
+   */
+  public void delete(File folder) {
+    if (folder == null || !Files.exists(folder.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+
+    directory.mkdirs();
+    final File target = new File(directory, counter.incrementAndGet() + "-" + folder.getName());
+    try {
+      Files.move(folder.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException | UnsupportedOperationException e) {
+      purge(folder);
+      return;
+    }
+    schedule(target);
+  }
+
+  /**
+   * Purges what earlier runs left in the trash, e.g. because the server stopped in between.
+   */
+  public void resume() {
+    final File[] leftovers = directory.listFiles();
+    if (leftovers != null) {
+      for (final File leftover : leftovers) {
+        schedule(leftover);
+      }
+    }
+  }
+
+  /**
+   * Waits until everything in the trash so far is purged, or returns false once the timeout passed.
+   */
+  public boolean awaitPurged(long timeoutMillis) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (pending.get() > 0) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    return true;
+  }
+
+  public JsonObject getStats() {
+    final JsonObject stats = new JsonObject();
+    stats.addProperty("pending", pending.get());
+    stats.addProperty("purged", purged.get());
+    stats.addProperty("failed", failed.get());
+    stats.addProperty("bytesReclaimed", bytesReclaimed.get());
+    return stats;
+  }
+
+  private void schedule(File folder) {
+    pending.incrementAndGet();
+    purger.execute(() -> {
+      try {
+        purge(folder);
+      } finally {
+        pending.decrementAndGet();
+      }
+    });
+  }
+
+  private void purge(File folder) {
+    if (!Files.exists(folder.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    try {
+      bytesReclaimed.addAndGet(walkers.invoke(new Purge(folder.toPath())));
+      purged.incrementAndGet();
+    } catch (final RuntimeException e) {
+      // the rest of the folder stays in the trash until the next start
+      failed.incrementAndGet();
+    }
+  }
+
+  /**
+   * Deletes a tree and returns the bytes its files took. Subdirectories are purged in parallel,
+   * symbolic links are deleted but not followed.
+   */
+  private static final class Purge extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    private final transient Path path;
+
+    Purge(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    protected Long compute() {
+      long bytes = 0;
+      try {
+        final BasicFileAttributes attributes =
+            Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attributes.isDirectory()) {
+          final List<Purge> subdirectories = new ArrayList<>();
+          try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+            for (final Path entry : entries) {
+              if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                subdirectories.add(new Purge(entry));
+              } else {
+                bytes += Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+                Files.delete(entry);
+              }
+            }
+          }
+          for (final Purge subdirectory : ForkJoinTask.invokeAll(subdirectories)) {
+            bytes += subdirectory.join();
+          }
+        } else {
+          bytes += attributes.size();
+        }
+        Files.deleteIfExists(path);
+      } catch (final IOException ioe) {
+        throw new IllegalStateException(ioe);
+      }
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+
+public class XmlUtils {
+
+  private XmlUtils() {
+
+  }
+
+  public static XMLInputFactory newSecureInputFactory() {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    // no doctype and no external entities, the reports never need them
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    return factory;
+  }
+}
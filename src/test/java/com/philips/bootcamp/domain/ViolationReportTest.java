@@ -0,0 +1,63 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ViolationReportTest {
+  private static final String JSON = "{\"report\":{\"A.java\":[{\"line\":\"3\",\"priority\":\"1\","
+      + "\"rule\":\"R\",\"message\":\"m\",\"context\":\"0000000a\"},{\"line\":4,\"message\":\"n\"}],"
+      + "\"B.java\":[]},\"metrics\":{\"errors\":2}}";
+
+  @Test
+  public void fromJsonKeepsTheJsonOfTheTools() {
+    final JsonObject json = new JsonParser().parse(JSON).getAsJsonObject();
+    final ViolationReport report = ViolationReport.fromJson(json);
+
+    assertEquals("priority", report.getLevelName());
+    assertEquals(2, report.getFileCount());
+    assertEquals(2, report.size());
+    assertEquals(json, report.toJson());
+    assertEquals(json, new JsonParser().parse(report.toString()));
+  }
+
+  @Test
+  public void fromJsonRejectsViolationsItCannotWriteBack() {
+    assertNull(ViolationReport.fromJson(parse("{\"report\":{\"A\":[{\"message\":\"m\",\"line\":\"3\"}]}}")));
+    assertNull(ViolationReport.fromJson(parse("{\"report\":{\"A\":[{\"line\":\"03\"}]}}")));
+    assertNull(ViolationReport.fromJson(parse("{\"report\":{\"A\":[{\"column\":\"3\"}],"
+        + "\"B\":[{\"severity\":\"error\"}]}}")));
+    assertNull(ViolationReport.fromJson(parse("{\"report\":{\"A\":[{\"context\":\"xyz\"}]}}")));
+    assertNull(ViolationReport.fromJson(parse("{\"buildStatus\":\"success\"}")));
+  }
+
+  @Test
+  public void addPoolsStringsAndKeepsFilesApart() {
+    final ViolationReport report = new ViolationReport("severity");
+    report.addFile("A.java");
+    report.add(1, "error", "R", "m", "0000000a");
+    report.add(ViolationReport.NO_LINE, "error", "R", "m", null);
+    report.addFile("B.java");
+    report.add(7, "warning", null, "m", null);
+
+    assertEquals(1, report.indexOf("B.java"));
+    assertEquals(-1, report.indexOf("C.java"));
+    assertEquals(2, report.getStart(1));
+    assertTrue(report.getMessage(0) == report.getMessage(2));
+    assertFalse(report.hasLine(1));
+    assertEquals(parse("{\"severity\":\"error\",\"rule\":\"R\",\"message\":\"m\"}"), report.getViolation(1));
+    assertTrue(report.equals(0, ViolationReport.fromJson(report.toJson()), 0));
+    assertFalse(report.equals(0, report, 1));
+  }
+
+  private static JsonObject parse(String json) {
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+}
@@ -3,13 +3,18 @@
  */
 package com.philips.bootcamp.rest;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import java.util.List;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import com.philips.bootcamp.domain.FenceJob;
 import com.philips.bootcamp.domain.Project;
+import com.philips.bootcamp.service.FenceJobService;
 import com.philips.bootcamp.service.ProjectService;
 
 public class ProjectControllerTest {
@@ -78,8 +83,10 @@ public class ProjectControllerTest {
     final String project = "project";
     final ProjectService ps = Mockito.mock(ProjectService.class);
     Mockito.when(ps.delete(project)).thenReturn(false);
+    final FenceJobService js = Mockito.mock(FenceJobService.class);
     final ProjectController controller = new ProjectController();
     controller.setService(ps);
+    controller.setJobService(js);
 
     assertEquals(HttpStatus.NOT_FOUND, controller.deleteProject(project).getStatusCode());
   }
@@ -89,10 +96,15 @@ public class ProjectControllerTest {
     final String project = "project";
     final ProjectService ps = Mockito.mock(ProjectService.class);
     Mockito.when(ps.delete(project)).thenReturn(true);
+    final FenceJobService js = Mockito.mock(FenceJobService.class);
     final ProjectController controller = new ProjectController();
     controller.setService(ps);
+    controller.setJobService(js);
 
     assertEquals(HttpStatus.NO_CONTENT, controller.deleteProject(project).getStatusCode());
+    final InOrder order = Mockito.inOrder(js, ps);
+    order.verify(js).cancel(project);
+    order.verify(ps).delete(project);
   }
 
   @Test
@@ -200,13 +212,146 @@ public class ProjectControllerTest {
   }
 
   @Test
-  public void buildProject() throws Throwable {
+  public void getProjectToolReport() {
     final ProjectService ps = Mockito.mock(ProjectService.class);
-    Mockito.when(ps.fenceProject("project")).thenReturn("value");
+    Mockito.when(ps.getReport("project", "pmd", "A.java")).thenReturn("[]");
+    Mockito.when(ps.getReport("project", "pmd", "B.java")).thenReturn("No report for: B.java");
     final ProjectController controller = new ProjectController();
     controller.setService(ps);
 
-    assertEquals("value", controller.fenceProject("project"));
+    assertEquals("[]", controller.getProjectReport("project", "pmd", "A.java").getBody());
+    assertEquals(HttpStatus.NOT_FOUND, controller.getProjectReport("project", "pmd", "B.java").getStatusCode());
   }
 
-}
\ No newline at end of file
+  @Test
+  public void getProjectHistory() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.getHistory("project")).thenReturn("[]");
+    Mockito.when(ps.getHistoricReport("project", 7)).thenReturn("No report for run: 7");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals(HttpStatus.OK, controller.getProjectHistory("project").getStatusCode());
+    assertEquals(HttpStatus.NOT_FOUND, controller.getProjectHistoricReport("project", 7).getStatusCode());
+  }
+
+  @Test
+  public void fenceProjectIsAcceptedAsJob() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.find("project")).thenReturn(new Project());
+    final FenceJobService js = Mockito.mock(FenceJobService.class);
+    final FenceJob job = new FenceJob("project");
+    Mockito.when(js.submit("project", false)).thenReturn(job);
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+    controller.setJobService(js);
+
+    final ResponseEntity<String> response = controller.fenceProject("project", false);
+    assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+    assertEquals("/api/job/" + job.getId(), response.getHeaders().getLocation().toString());
+  }
+
+  @Test
+  public void fenceProjectIsRejectedWhenQueueIsFull() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.find("project")).thenReturn(new Project());
+    final FenceJobService js = Mockito.mock(FenceJobService.class);
+    Mockito.when(js.submit("project", false)).thenReturn(null);
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+    controller.setJobService(js);
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, controller.fenceProject("project", false).getStatusCode());
+  }
+
+  @Test
+  public void fenceProjectNotExisting() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals(HttpStatus.NOT_FOUND, controller.fenceProject("project", false).getStatusCode());
+  }
+
+  @Test
+  public void getJob() {
+    final FenceJobService js = Mockito.mock(FenceJobService.class);
+    final FenceJob job = new FenceJob("project");
+    Mockito.when(js.find(job.getId())).thenReturn(job);
+    final ProjectController controller = new ProjectController();
+    controller.setJobService(js);
+
+    assertEquals(HttpStatus.OK, controller.getJob(job.getId()).getStatusCode());
+    assertEquals(HttpStatus.NOT_FOUND, controller.getJob("unknown").getStatusCode());
+  }
+
+  @Test
+  public void importProjects() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.importProjects("projects")).thenReturn("results");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals("results", controller.importProjects("projects"));
+  }
+
+  @Test
+  public void getBatchReport() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.getBatchReport("pmd", "sources")).thenReturn("report");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals("report", controller.getBatchReport("pmd", "sources"));
+  }
+
+  @Test
+  public void getInstantCacheStats() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.getInstantCacheStats()).thenReturn("stats");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals("stats", controller.getInstantCacheStats());
+  }
+
+  @Test
+  public void getTrashStats() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.getTrashStats()).thenReturn("stats");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals("stats", controller.getTrashStats());
+  }
+
+  @Test
+  public void getWorkspaceStats() {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.getWorkspaceStats()).thenReturn("stats");
+    final ProjectController controller = new ProjectController();
+    controller.setService(ps);
+
+    assertEquals("stats", controller.getWorkspaceStats());
+  }
+
+  @Test
+  public void getRangeOfWholeFile() {
+    assertArrayEquals(new long[] {0, 9}, ProjectController.getRange(null, 10));
+  }
+
+  @Test
+  public void getRangeWithBoundsAndSuffix() {
+    assertArrayEquals(new long[] {2, 5}, ProjectController.getRange("bytes=2-5", 10));
+    assertArrayEquals(new long[] {4, 9}, ProjectController.getRange("bytes=4-", 10));
+    assertArrayEquals(new long[] {7, 9}, ProjectController.getRange("bytes=-3", 10));
+    assertArrayEquals(new long[] {8, 9}, ProjectController.getRange("bytes=8-20", 10));
+  }
+
+  @Test
+  public void getRangeNotSatisfiable() {
+    assertNull(ProjectController.getRange("bytes=10-", 10));
+    assertNull(ProjectController.getRange("bytes=-", 10));
+    assertNull(ProjectController.getRange("lines=1-2", 10));
+  }
+}
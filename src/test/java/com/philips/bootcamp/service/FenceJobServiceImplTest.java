@@ -0,0 +1,130 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.mockito.Mockito;
+import com.philips.bootcamp.domain.FenceJob;
+
+public class FenceJobServiceImplTest {
+
+  @Test
+  public void submittedJobRunsAndKeepsResult() throws Throwable {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.fenceProject(Mockito.eq("project"), Mockito.eq(false), Mockito.any(FenceJob.class)))
+        .thenReturn("{\"status\":\"pass\",\"report\" : {}}");
+    final FenceJobServiceImpl service = new FenceJobServiceImpl(1, 1);
+    service.setProjectService(ps);
+
+    final FenceJob job = service.submit("project", false);
+    waitFor(job);
+
+    assertSame(job, service.find(job.getId()));
+    assertEquals(FenceJob.DONE, job.getStatus());
+    assertEquals("pass", job.toJson().get("result").getAsJsonObject().get("status").getAsString());
+  }
+
+  @Test
+  public void finishedJobsLeaveNoRunBehind() throws Throwable {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.fenceProject(Mockito.anyString(), Mockito.eq(false), Mockito.any(FenceJob.class)))
+        .thenReturn("{\"status\":\"pass\",\"report\" : {}}");
+    final FenceJobServiceImpl service = new FenceJobServiceImpl(4, 16);
+    service.setProjectService(ps);
+
+    final List<FenceJob> submitted = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      submitted.add(service.submit("project" + i % 8, false));
+      waitFor(submitted.get(i));
+    }
+
+    for (final FenceJob job : submitted) {
+      assertEquals(FenceJob.DONE, job.getStatus());
+    }
+    assertTrue(service.runs.isEmpty());
+  }
+
+  @Test
+  public void failedFenceMarksJobFailed() throws Throwable {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.fenceProject(Mockito.eq("project"), Mockito.eq(false), Mockito.any(FenceJob.class)))
+        .thenThrow(new IllegalStateException());
+    final FenceJobServiceImpl service = new FenceJobServiceImpl(1, 1);
+    service.setProjectService(ps);
+
+    final FenceJob job = service.submit("project", false);
+    waitFor(job);
+
+    assertEquals(FenceJob.FAILED, job.getStatus());
+  }
+
+  @Test
+  public void submitReusesActiveJobAndRejectsWhenQueueIsFull() throws Throwable {
+    final CountDownLatch release = new CountDownLatch(1);
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.fenceProject(Mockito.anyString(), Mockito.eq(false), Mockito.any(FenceJob.class)))
+        .thenAnswer(invocation -> {
+          release.await();
+          return "{\"status\":\"pass\",\"report\" : {}}";
+        });
+    final FenceJobServiceImpl service = new FenceJobServiceImpl(1, 1);
+    service.setProjectService(ps);
+
+    final FenceJob running = service.submit("a", false);
+    for (int i = 0; i < 500 && !FenceJob.RUNNING.equals(running.getStatus()); i++) {
+      Thread.sleep(10);
+    }
+    assertSame(running, service.submit("a", false));
+    assertNotNull(service.submit("b", false));
+    assertNull(service.submit("c", false));
+
+    release.countDown();
+    waitFor(running);
+  }
+
+  @Test
+  public void cancelInterruptsRunningAndDropsQueuedJobs() throws Throwable {
+    final ProjectService ps = Mockito.mock(ProjectService.class);
+    Mockito.when(ps.fenceProject(Mockito.anyString(), Mockito.eq(false), Mockito.any(FenceJob.class)))
+        .thenAnswer(invocation -> {
+          try {
+            new CountDownLatch(1).await();
+            return "{\"status\":\"pass\",\"report\" : {}}";
+          } catch (final InterruptedException ie) {
+            return "{\"status\":\"cancelled\",\"error\" : \"The fence was cancelled\"}";
+          }
+        });
+    final FenceJobServiceImpl service = new FenceJobServiceImpl(1, 1);
+    service.setProjectService(ps);
+
+    final FenceJob running = service.submit("a", false);
+    for (int i = 0; i < 500 && !FenceJob.RUNNING.equals(running.getStatus()); i++) {
+      Thread.sleep(10);
+    }
+    final FenceJob queued = service.submit("b", false);
+
+    assertSame(queued, service.cancel("b"));
+    assertEquals(FenceJob.CANCELLED, queued.getStatus());
+    assertSame(running, service.cancel("a"));
+    waitFor(running);
+    assertEquals(FenceJob.CANCELLED, running.getStatus());
+    assertNull(service.cancel("a"));
+    assertNotNull(service.submit("c", false));
+    service.cancel("c");
+  }
+
+  private static void waitFor(FenceJob job) throws InterruptedException {
+    for (int i = 0; i < 500 && !job.isFinished(); i++) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import com.google.gson.JsonObject;
+
+public class InstantReportCacheTest {
+
+  @Test
+  public void getCountsHitsAndMisses() {
+    final InstantReportCache cache = new InstantReportCache(Long.MAX_VALUE);
+    assertNull(cache.get("a"));
+    cache.put("a", "report");
+    assertEquals("report", cache.get("a"));
+
+    final JsonObject stats = cache.getStats();
+    assertEquals(1, stats.get("hits").getAsInt());
+    assertEquals(1, stats.get("misses").getAsInt());
+    assertEquals(1, stats.get("entries").getAsInt());
+    assertEquals(2 * "areport".length(), stats.get("bytes").getAsInt());
+  }
+
+  @Test
+  public void putEvictsLeastRecentlyUsedReports() {
+    final InstantReportCache cache = new InstantReportCache(8);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.get("a");
+    cache.put("c", "3");
+
+    assertNull(cache.get("b"));
+    assertEquals("1", cache.get("a"));
+    assertEquals(1, cache.getStats().get("evictions").getAsInt());
+    assertEquals(8, cache.getStats().get("bytes").getAsInt());
+  }
+
+  @Test
+  public void putSkipsReportsLargerThanTheCache() {
+    final InstantReportCache cache = new InstantReportCache(4);
+    cache.put("a", "report");
+    assertEquals(0, cache.getStats().get("entries").getAsInt());
+  }
+
+  @Test
+  public void keyChangesWithFingerprintAndSource() {
+    final JsonObject settings = new JsonObject();
+    final String key = InstantReportCache.key("pmd", settings, "rules", "class A {}");
+
+    assertEquals(key, InstantReportCache.key("pmd", settings, "rules", "class A {}"));
+    assertNotEquals(key, InstantReportCache.key("pmd", settings, "other rules", "class A {}"));
+    assertNotEquals(key, InstantReportCache.key("pmd", settings, "rules", "class B {}"));
+    assertNull(InstantReportCache.key("maven", settings, null, "class A {}"));
+  }
+}
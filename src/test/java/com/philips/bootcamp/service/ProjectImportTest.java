@@ -0,0 +1,135 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.philips.bootcamp.dal.ProjectDAO;
+import com.philips.bootcamp.domain.Project;
+import com.philips.bootcamp.utils.Commands;
+
+public class ProjectImportTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String A = "{\"link\":\"https://host/a.git\",\"branch\":\"main\"}";
+  private static final String B = "{\"link\":\"https://host/b.git\",\"branch\":\"main\"}";
+
+  @Test
+  public void importProjectsReportsEveryProjectInOrder() {
+    final ProjectServiceImpl service = Mockito.spy(new ProjectServiceImpl());
+    Mockito.doReturn("Project created").when(service).save(Mockito.contains("a.git"));
+    Mockito.doReturn("Could not clone https://host/b.git").when(service).save(Mockito.contains("b.git"));
+
+    final JsonArray results = parse(service.importProjects("[" + A + "," + B + "," + A + "]"));
+
+    assertEquals(3, results.size());
+    assertEquals("pass", getStatus(results, 0));
+    assertEquals("fail", getStatus(results, 1));
+    assertEquals("Could not clone https://host/b.git", results.get(1).getAsJsonObject().get("message").getAsString());
+    assertEquals("fail", getStatus(results, 2));
+    Mockito.verify(service, Mockito.times(1)).save(Mockito.contains("a.git"));
+  }
+
+  @Test
+  public void slowProjectsDoNotHoldUpTheOthers() throws InterruptedException {
+    final CountDownLatch bSaved = new CountDownLatch(1);
+    final ProjectServiceImpl service = Mockito.spy(new ProjectServiceImpl());
+    Mockito.doAnswer(invocation -> {
+      bSaved.await();
+      return "Project updated";
+    }).when(service).save(Mockito.contains("a.git"));
+    Mockito.doAnswer(invocation -> {
+      bSaved.countDown();
+      return "Project created";
+    }).when(service).save(Mockito.contains("b.git"));
+
+    final JsonArray results = parse(service.importProjects("[" + A + "," + B + "]"));
+
+    assertEquals("pass", getStatus(results, 0));
+    assertEquals("pass", getStatus(results, 1));
+  }
+
+  @Test
+  public void importsOfTheSameBranchSaveOneProject() throws Exception {
+    final File origin = folder.newFolder("a.git");
+    git(origin, "init", "-q", "-b", "main");
+    Files.write(new File(origin, "A.java").toPath(), "class A {}".getBytes(StandardCharsets.UTF_8));
+    git(origin, "add", "A.java");
+    git(origin, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "A");
+
+    final Map<String, Project> projects = new ConcurrentHashMap<>();
+    final ProjectDAO dao = Mockito.mock(ProjectDAO.class);
+    Mockito.when(dao.find(Mockito.anyString())).thenAnswer(invocation -> projects.get(invocation.getArguments()[0]));
+    Mockito.when(dao.save(Mockito.any(Project.class))).thenAnswer(invocation -> {
+      final Project project = (Project) invocation.getArguments()[0];
+      projects.put(project.getName(), project);
+      return project;
+    });
+    final ProjectServiceImpl service = new ProjectServiceImpl();
+    service.setProjectDAO(dao);
+    service.setParentFile(folder.newFolder("sources"));
+    service.setMirrorDirectory(folder.newFolder("mirrors"));
+    final String entry = "[{\"link\":\"file://" + origin.getAbsolutePath() + "\",\"branch\":\"main\"}]";
+
+    final ExecutorService imports = Executors.newFixedThreadPool(2);
+    final Future<String> first = imports.submit(() -> service.importProjects(entry));
+    final Future<String> second = imports.submit(() -> service.importProjects(entry));
+    final List<String> messages = Arrays.asList(getMessage(parse(first.get()), 0), getMessage(parse(second.get()), 0));
+    imports.shutdown();
+
+    assertTrue(messages.contains("Project created"));
+    assertTrue(messages.contains("Project updated"));
+    assertEquals(Collections.singleton("a-main"), projects.keySet());
+    assertEquals("Project updated", getMessage(parse(service.importProjects(entry)), 0));
+    Mockito.verify(dao, Mockito.times(1)).save(Mockito.any(Project.class));
+  }
+
+  @Test
+  public void importProjectsRejectsAnythingButAnArray() {
+    final ProjectServiceImpl service = new ProjectServiceImpl();
+    assertEquals("{\"error\" : \"Content must be a json array of projects\"}", service.importProjects(A));
+    assertEquals("{\"error\" : \"No content provided\"}", service.importProjects(null));
+  }
+
+  private static JsonArray parse(String json) {
+    return new JsonParser().parse(json).getAsJsonArray();
+  }
+
+  private static String getMessage(JsonArray results, int index) {
+    return results.get(index).getAsJsonObject().get("message").getAsString();
+  }
+
+  private static void git(File directory, String... arguments) {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    assertNotNull(Commands.run(directory, command));
+  }
+
+  private static String getStatus(JsonArray results, int index) {
+    final JsonObject result = results.get(index).getAsJsonObject();
+    return result.get("status").getAsString();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.gson.JsonObject;
+import com.philips.bootcamp.domain.Project;
+
+public class WorkspaceBudgetTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void evictEvictsTheLeastRecentlyFenced() throws IOException {
+    final WorkspaceBudget budget = new WorkspaceBudget(folder.getRoot(), 250);
+    final Project old = createProject("old", 1000L);
+    final Project recent = createProject("recent", 3000L);
+    final Project unbuilt = createProject("unbuilt", null);
+
+    assertEquals(Collections.singletonList("old"), budget.evict(Arrays.asList(recent, old, unbuilt)));
+    assertFalse(new File(folder.getRoot(), "old").exists());
+    assertTrue(new File(folder.getRoot(), "recent").exists());
+
+    final JsonObject stats = budget.getStats();
+    assertEquals(2, stats.get("workspaces").getAsInt());
+    assertEquals(200, stats.get("bytes").getAsLong());
+    assertEquals(1, stats.get("evictions").getAsInt());
+  }
+
+  @Test
+  public void evictKeepsWorkspacesInUse() throws IOException {
+    final WorkspaceBudget budget = new WorkspaceBudget(folder.getRoot(), 100);
+    final Project old = createProject("old", 1000L);
+    final Project recent = createProject("recent", 3000L);
+
+    budget.acquire("old");
+    assertEquals(Collections.singletonList("recent"), budget.evict(Arrays.asList(old, recent)));
+    budget.release("old");
+
+    createProject("recent", 3000L);
+    budget.measure("recent");
+    assertEquals(Collections.singletonList("old"), budget.evict(Arrays.asList(old, recent)));
+  }
+
+  @Test
+  public void updateEvictsOnAThreadOfItsOwn() throws Exception {
+    final WorkspaceBudget budget = new WorkspaceBudget(folder.getRoot(), 150);
+    final Project old = createProject("old", 1000L);
+    final Project recent = createProject("recent", 3000L);
+    final List<String> threads = new CopyOnWriteArrayList<>();
+
+    budget.update("recent", () -> {
+      threads.add(Thread.currentThread().getName());
+      return Arrays.asList(old, recent);
+    });
+    for (int i = 0; i < 500 && budget.getStats().get("evictions").getAsInt() == 0; i++) {
+      Thread.sleep(10);
+    }
+
+    assertFalse(new File(folder.getRoot(), "old").exists());
+    assertTrue(new File(folder.getRoot(), "recent").exists());
+    assertEquals(Collections.singletonList("workspace-evictor"), threads);
+    budget.acquire("old");
+    budget.release("old");
+  }
+
+  @Test
+  public void acquireTakesTheWorkspaceForOneCallerAtATime() throws Exception {
+    final WorkspaceBudget budget = new WorkspaceBudget(folder.getRoot(), 100);
+    final CountDownLatch acquired = new CountDownLatch(1);
+    budget.acquire("project");
+    final Thread other = new Thread(() -> {
+      budget.acquire("project");
+      acquired.countDown();
+      budget.release("project");
+    });
+    other.start();
+
+    assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+    budget.release("project");
+    assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    other.join();
+  }
+
+  // a workspace of 100 bytes, never built projects count from their creation at 2000
+  private Project createProject(String name, Long lastBuild) throws IOException {
+    final File workspace = new File(folder.getRoot(), name);
+    workspace.mkdirs();
+    Files.write(new File(workspace, "A.java").toPath(), new byte[100]);
+
+    final Project project = new Project();
+    project.setName(name);
+    project.setProjectCreationDate(new Date(2000L));
+    project.setLastBuildDate(lastBuild == null ? null : new Date(lastBuild));
+    return project;
+  }
+}
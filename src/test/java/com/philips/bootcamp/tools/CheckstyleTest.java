@@ -7,7 +7,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.Test;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
 import com.philips.bootcamp.utils.FileUtils;
@@ -108,6 +113,149 @@ public class CheckstyleTest {
   //    assertEquals(expectedJson, result.toString());
   //  }
 
+  @Test
+  public void executeAuditsProjectSourcesInProcess() throws IOException {
+    final File project = new File("checkstyleProject");
+    final File sources = new File(project, "src/main/java");
+    sources.mkdirs();
+    FileUtils.writeFileContents(new File(sources, "Main.java"), "class Main {}");
+
+    final JsonObject settings = new Checkstyle().getDefaultSettings();
+    settings.addProperty("project", project.getAbsolutePath());
+    final JsonObject result = new Checkstyle().execute(settings);
+    FileUtils.deleteDirectoryRecursion(project.toPath());
+
+    final String fileName = new File(sources, "Main.java").getAbsolutePath();
+    assertTrue(result.get("report").getAsJsonObject().has(fileName));
+    assertEquals(result.get("report").getAsJsonObject().get(fileName).getAsJsonArray().size(),
+        result.get("metrics").getAsJsonObject().get("errors").getAsInt());
+  }
+
+  @Test
+  public void executeAuditsAgainAfterTheStyleguideChanged() throws IOException {
+    final File project = new File("checkstyleStyleguideProject");
+    final File source = new File(project, "src/main/java/Main.java");
+    source.getParentFile().mkdirs();
+    FileUtils.writeFileContents(source, "class Main {\n  int Bad_Name;\n}\n");
+    final File styleguide = new File(project, "checks.xml");
+    final String config = "<?xml version=\"1.0\"?>\n<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle"
+        + " Configuration 1.3//EN\" \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n"
+        + "<module name=\"Checker\"><module name=\"TreeWalker\">%s</module></module>\n";
+
+    final JsonObject settings = new Checkstyle().getDefaultSettings();
+    settings.addProperty("project", project.getAbsolutePath());
+    settings.addProperty("styleguide", new File(project, "checks").getAbsolutePath());
+    FileUtils.writeFileContents(styleguide, String.format(config, "<module name=\"MemberName\"/>"));
+    final JsonObject before = new Checkstyle().execute(settings);
+    FileUtils.writeFileContents(styleguide, String.format(config, ""));
+    final JsonObject after = new Checkstyle().execute(settings);
+    FileUtils.deleteDirectoryRecursion(project.toPath());
+
+    assertEquals(1, before.get("metrics").getAsJsonObject().get("errors").getAsInt());
+    assertEquals(0, after.get("metrics").getAsJsonObject().get("errors").getAsInt());
+  }
+
+  @Test
+  public void analyzeSourceReportsUnderGivenName() {
+    final Checkstyle cs = new Checkstyle();
+    final JsonObject result = cs.analyze("Main.java", "class Main {}", cs.getDefaultSettings());
+
+    assertTrue(cs.canAnalyzeSource());
+    assertEquals(1, result.get("report").getAsJsonObject().size());
+    assertEquals(result.get("report").getAsJsonObject().get("Main.java").getAsJsonArray().size(),
+        result.get("metrics").getAsJsonObject().get("errors").getAsInt());
+  }
+
+  @Test
+  public void analyzeSourcesKeepsFilesWithSameBaseNameApart() {
+    final Checkstyle cs = new Checkstyle();
+    final Map<String, String> sources = new LinkedHashMap<>();
+    sources.put("a/Main.java", "class Main {\n  int Bad_Name;\n  int Other_Bad_Name;\n}\n");
+    sources.put("b/Main.java", "class Main {}\n");
+    final JsonObject report = cs.analyze(sources, cs.getDefaultSettings()).get("report").getAsJsonObject();
+
+    assertEquals(2, report.size());
+    assertTrue(report.get("a/Main.java").getAsJsonArray().size()
+        > report.get("b/Main.java").getAsJsonArray().size());
+    final JsonObject violation = report.get("a/Main.java").getAsJsonArray().get(0).getAsJsonObject();
+    assertTrue(violation.has("rule"));
+    assertEquals(8, violation.get("context").getAsString().length());
+  }
+
+  @Test
+  public void analyzeSourcesFindsNothingNextToThem() throws IOException {
+    final File styleguide = File.createTempFile("checks", ".xml");
+    FileUtils.writeFileContents(styleguide, "<?xml version=\"1.0\"?>\n<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD "
+        + "Checkstyle Configuration 1.3//EN\" \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n"
+        + "<module name=\"Checker\"><module name=\"JavadocPackage\"/><module name=\"TreeWalker\">"
+        + "<module name=\"MemberName\"/></module></module>\n");
+    final Checkstyle cs = new Checkstyle();
+    final JsonObject settings = cs.getDefaultSettings();
+    settings.addProperty("styleguide", styleguide.getPath().substring(0, styleguide.getPath().length() - 4));
+    final JsonObject report = cs.analyze("a/Main.java", "class Main {\n  int Bad_Name;\n}", settings)
+        .get("report").getAsJsonObject();
+    styleguide.delete();
+
+    final JsonArray violations = report.get("a/Main.java").getAsJsonArray();
+    assertEquals(2, violations.size());
+    assertEquals("JavadocPackageCheck", violations.get(0).getAsJsonObject().get("rule").getAsString());
+    assertEquals("MemberNameCheck", violations.get(1).getAsJsonObject().get("rule").getAsString());
+    assertEquals(8, violations.get(1).getAsJsonObject().get("context").getAsString().length());
+  }
+
+  @Test
+  public void analyzeSourcesWritesThemOutForChecksReadingFiles() {
+    final Checkstyle cs = new Checkstyle();
+    final JsonObject settings = cs.getDefaultSettings();
+    settings.addProperty("styleguide", "sun_checks");
+    final JsonObject report = cs.analyze("Main.java", "class Main {}", settings).get("report").getAsJsonObject();
+
+    boolean newline = false;
+    for (final JsonElement violation : report.get("Main.java").getAsJsonArray()) {
+      newline |= "NewlineAtEndOfFileCheck".equals(violation.getAsJsonObject().get("rule").getAsString())
+          && "File does not end with a newline.".equals(violation.getAsJsonObject().get("message").getAsString());
+    }
+    assertTrue(newline);
+  }
+
+  @Test
+  public void getFingerprintDependsOnStyleguide() {
+    final Checkstyle cs = new Checkstyle();
+    final JsonObject settings = cs.getDefaultSettings();
+    final String fingerprint = cs.getFingerprint(settings);
+
+    assertEquals(fingerprint, cs.getFingerprint(cs.getDefaultSettings()));
+    settings.addProperty("styleguide", "sun_checks");
+    assertTrue(!fingerprint.equals(cs.getFingerprint(settings)));
+    settings.addProperty("styleguide", "missing_checks");
+    assertNull(cs.getFingerprint(settings));
+  }
+
+  @Test
+  public void parseXmlStreamsReportAndMetrics() {
+    final Checkstyle cs = new Checkstyle();
+    final String out = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<checkstyle version=\"8.23\">" +
+        "<file name=\"Main.java\">" +
+        "<error line=\"1\" severity=\"error\" message=\"File does not end with a newline.\"/>" +
+        "</file>" +
+        "<file name=\"Other.java\"></file>" +
+        "</checkstyle>";
+    final JsonObject result = cs.parseXml(out);
+    final String expectedJson = "{\"report\":{\"Main.java\":[{\"line\":\"1\",\"severity\":\"error\"," +
+        "\"message\":\"File does not end with a newline.\"}],\"Other.java\":[]},\"metrics\":{\"errors\":1}}";
+    assertEquals(expectedJson, result.toString());
+  }
+
+  @Test
+  public void parseXmlRejectsDoctypes() {
+    final Checkstyle cs = new Checkstyle();
+    final String out = "<?xml version=\"1.0\"?>" +
+        "<!DOCTYPE checkstyle [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>" +
+        "<checkstyle><file name=\"&secret;\"></file></checkstyle>";
+    assertNull(cs.parseXml(out));
+  }
+
   @Test
   public void nullForNull() {
     final Checkstyle cs = new Checkstyle();
@@ -5,9 +5,15 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
+import com.philips.bootcamp.domain.Tool;
+import com.philips.bootcamp.domain.ToolTimeoutException;
 import com.philips.bootcamp.utils.FileUtils;
 
 import org.junit.Test;
@@ -62,6 +68,16 @@ public class MavenTest {
         assertTrue(maven.verifySettings(settings));
     }
 
+    @Test
+    public void getDaemonCommandReplacesMvnAndSharesRepository() {
+        Maven maven = new Maven();
+        File daemon = new File("mvnd");
+        List<String> command = maven.getDaemonCommand(daemon, "mvn  clean package");
+
+        assertEquals(List.of(daemon.getAbsolutePath(), "clean", "package", "--batch-mode",
+            "-Dmaven.repo.local=" + Constants.repositoryDirectory.getAbsolutePath()), command);
+    }
+
     @Test
     public void execute() {
         Maven maven = Mockito.mock(Maven.class);
@@ -82,22 +98,85 @@ public class MavenTest {
     public void handleOutputForSuccess() {
         Maven maven = new Maven();
         String out = "info BUILD SUCCESS info";
-        JsonObject result = new JsonObject();
-        result.addProperty("buildStatus", "success");
-        result.addProperty("details", out);
+        JsonObject result = maven.handleOutput(out);
 
-        assertEquals(result, maven.handleOutput(out));
+        assertEquals("success", result.get("buildStatus").getAsString());
+        assertEquals(out, result.get("details").getAsString());
     }
     
     @Test
     public void handleOutputForFailure() {
         Maven maven = new Maven();
         String out = "info BUILD FAILURE info";
-        JsonObject result = new JsonObject();
-        result.addProperty("buildStatus", "failure");
-        result.addProperty("details", out);
+        JsonObject result = maven.handleOutput(out);
+
+        assertEquals("failure", result.get("buildStatus").getAsString());
+        assertEquals(out, result.get("details").getAsString());
+    }
+
+    @Test
+    public void handleOutputKeepsOnlyTheTail() {
+        Maven maven = new Maven();
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < MavenLogParser.TAIL_LINES + 10; i++) {
+            out.append("line " + i + "\n");
+        }
+        String details = maven.handleOutput(out.toString()).get("details").getAsString();
+
+        assertEquals(MavenLogParser.TAIL_LINES, details.split("\n", -1).length);
+        assertTrue(details.endsWith("line " + (MavenLogParser.TAIL_LINES + 9) + "\n"));
+    }
 
-        assertEquals(result, maven.handleOutput(out));
+    @Test
+    public void handleOutputParsesModulesWarningsAndTests() {
+        Maven maven = new Maven();
+        String out = String.join("\n",
+            "[WARNING] COMPILATION WARNING : ",
+            "[WARNING] /work/src/main/java/a/A.java:[12,5] unchecked conversion",
+            "[WARNING] The requested profile \"ci\" could not be activated because it does not exist.",
+            "[INFO] Tests run: 3, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.1 s - in a.ATest",
+            "[INFO] Results:",
+            "[INFO] ",
+            "[WARNING] Tests run: 3, Failures: 1, Errors: 0, Skipped: 1",
+            "[INFO] Reactor Summary for parent 1.0:",
+            "[INFO] core ............................................... SUCCESS [  2.345 s]",
+            "[INFO] web ................................................ SKIPPED",
+            "[INFO] BUILD SUCCESS");
+        JsonObject result = maven.handleOutput(out);
+
+        assertEquals("success", result.get("buildStatus").getAsString());
+        assertEquals(1, result.get("warnings").getAsInt());
+        assertEquals(3, result.get("tests").getAsJsonObject().get("run").getAsInt());
+        assertEquals(1, result.get("tests").getAsJsonObject().get("failures").getAsInt());
+        assertEquals("2.345 s", result.get("modules").getAsJsonObject().get("core").getAsJsonObject()
+            .get("time").getAsString());
+        assertEquals("skipped", result.get("modules").getAsJsonObject().get("web").getAsJsonObject()
+            .get("status").getAsString());
+        assertEquals(2, result.get("modules").getAsJsonObject().size());
+    }
+
+    @Test(expected = ToolTimeoutException.class)
+    public void executeThrowsWhenTheBuildPassesItsDeadline() throws IOException {
+        final File project = Files.createTempDirectory("maven").toFile();
+        final File daemon = new File(project, "mvnd");
+        Files.write(daemon.toPath(), "#!/bin/sh\nsleep 10\n".getBytes(StandardCharsets.UTF_8));
+        daemon.setExecutable(true);
+        Maven maven = new Maven() {
+            @Override
+            File getDaemon() {
+                return daemon;
+            }
+        };
+
+        JsonObject settings = new JsonObject();
+        settings.addProperty("project", project.getAbsolutePath());
+        settings.addProperty("command", "mvn package");
+        settings.addProperty(Tool.DEADLINE, System.currentTimeMillis() + 200);
+        try {
+            maven.execute(settings);
+        } finally {
+            FileUtils.deleteDirectoryRecursion(project.toPath());
+        }
     }
 
     @Test
@@ -5,13 +5,13 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
 
 import com.google.gson.JsonObject;
 import com.philips.bootcamp.domain.Constants;
 import com.philips.bootcamp.utils.FileUtils;
 
 import org.junit.Test;
-import org.mockito.Mockito;
 
 public class PmdTest {
 
@@ -63,19 +63,52 @@ public class PmdTest {
     }
 
     @Test
-    public void execute() {
-        PMD pmd = Mockito.mock(PMD.class);
-        JsonObject settings = new JsonObject();
-        settings.addProperty("ruleset", "rulesets/java/quickstart.xml");
-        settings.addProperty("project", "test");
-        JsonObject returnValue = new JsonObject();
-        //Mockito.when(pmd.run("\"./../tools/pmd/bin/pmd.bat\" -d \"test\" -R rulesets/java/quickstart.xml -f xml"))
-        //    .thenReturn("value");
-        Mockito.when(pmd.parseXml("value")).thenReturn(returnValue);
-        Mockito.when(pmd.execute(settings)).thenCallRealMethod();
-
-        JsonObject result = pmd.execute(settings);
-        assertEquals(returnValue, result);
+    public void execute() throws IOException {
+        File project = new File("pmdProject");
+        project.mkdir();
+        File source = new File(project, "Main.java");
+        FileUtils.writeFileContents(source, "class Main { void run() { try { run(); } catch (Exception e) {} } }");
+
+        JsonObject settings = new PMD().getDefaultSettings();
+        settings.addProperty("project", project.getAbsolutePath());
+        JsonObject result = new PMD().execute(settings);
+        FileUtils.deleteDirectoryRecursion(project.toPath());
+
+        JsonObject report = result.get("report").getAsJsonObject();
+        assertTrue(report.has(source.getAbsolutePath()));
+        assertEquals(report.get(source.getAbsolutePath()).getAsJsonArray().size(),
+            result.get("metrics").getAsJsonObject().get("errors").getAsInt());
+    }
+
+    @Test
+    public void getFingerprintIsStableAndNullForMissingRuleset() {
+        PMD pmd = new PMD();
+        JsonObject settings = pmd.getDefaultSettings();
+        assertEquals(pmd.getFingerprint(settings), pmd.getFingerprint(pmd.getDefaultSettings()));
+
+        settings.addProperty("ruleset", "rulesets/java/missing.xml");
+        assertNull(pmd.getFingerprint(settings));
+    }
+
+    @Test
+    public void analyzeSourceInMemory() {
+        PMD pmd = new PMD();
+        JsonObject result = pmd.analyze("Main.java",
+            "class Main { void run() { try { run(); } catch (Exception e) {} } }", pmd.getDefaultSettings());
+
+        JsonObject report = result.get("report").getAsJsonObject();
+        assertTrue(pmd.canAnalyzeSource());
+        assertTrue(report.has("Main.java"));
+        assertEquals(report.get("Main.java").getAsJsonArray().size(),
+            result.get("metrics").getAsJsonObject().get("errors").getAsInt());
+    }
+
+    @Test
+    public void analyzeSkipsSourcesThatDoNotParse() {
+        PMD pmd = new PMD();
+        JsonObject result = pmd.analyze("Main.java", "class {", pmd.getDefaultSettings());
+
+        assertEquals(0, result.get("metrics").getAsJsonObject().get("errors").getAsInt());
     }
 
     @Test 
@@ -0,0 +1,137 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.gson.JsonArray;
+import com.philips.bootcamp.domain.ViolationReport;
+
+public class ViolationCacheTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void analyzeRunsAnalyzerOnlyOnMisses() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), Long.MAX_VALUE);
+    final File a = write("a/A.java", "class A {}");
+    final File b = write("b/A.java", "class A {}");
+    final File c = write("b/C.java", "class C {}");
+    final List<File> analyzed = new ArrayList<>();
+
+    final String namespace = ViolationCache.namespace("tool", "1", "settings");
+    ViolationReport data = cache.analyze(Arrays.asList(a), namespace, ViolationCache.Scope.CONTENT,
+        files -> report(files, analyzed), true, "severity");
+    assertEquals(1, data.size());
+
+    data = cache.analyze(Arrays.asList(b, c), namespace, ViolationCache.Scope.CONTENT,
+        files -> report(files, analyzed), true, "severity");
+    assertEquals(Arrays.asList(a, c), analyzed);
+    assertEquals(0, data.indexOf(b.getAbsolutePath()));
+    assertEquals(2, data.size());
+    assertEquals("m", data.getMessage(data.getStart(0)));
+  }
+
+  @Test
+  public void analyzeMissesForOtherNamespace() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), Long.MAX_VALUE);
+    final File a = write("A.java", "class A {}");
+    final List<File> analyzed = new ArrayList<>();
+
+    cache.analyze(Arrays.asList(a), ViolationCache.namespace("tool", "1", "x"), ViolationCache.Scope.CONTENT,
+        files -> report(files, analyzed), true, "severity");
+    cache.analyze(Arrays.asList(a), ViolationCache.namespace("tool", "2", "x"), ViolationCache.Scope.CONTENT,
+        files -> report(files, analyzed), true, "severity");
+    assertEquals(Arrays.asList(a, a), analyzed);
+  }
+
+  @Test
+  public void analyzeDropsEmptyEntriesUnlessKept() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), Long.MAX_VALUE);
+    final File a = write("A.java", "class A {}");
+
+    final ViolationReport data = cache.analyze(Arrays.asList(a), "ns", ViolationCache.Scope.CONTENT, files -> {
+      final ViolationReport report = new ViolationReport("severity");
+      report.addFile(a.getAbsolutePath());
+      return report;
+    }, false, "severity");
+    assertEquals(-1, data.indexOf(a.getAbsolutePath()));
+    assertEquals(new JsonArray(), cache.get(getOnlyKey()));
+  }
+
+  @Test
+  public void analyzeCachesOnlyFilesTheAnalyzerProcessed() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), Long.MAX_VALUE);
+    final File a = write("A.java", "class A {}");
+
+    cache.analyze(Arrays.asList(a), "ns", ViolationCache.Scope.CONTENT,
+        files -> new ViolationReport("severity"), false, "severity");
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void analyzeKeysByPathOrNotAtAllWhenChecksLookBeyondTheContent() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), Long.MAX_VALUE);
+    final File a = write("a/A.java", "class A {}");
+    final File b = write("b/A.java", "class A {}");
+    final List<File> analyzed = new ArrayList<>();
+    final Function<List<File>, ViolationReport> analyzer = files -> report(files, analyzed);
+
+    cache.analyze(Arrays.asList(a), "ns", ViolationCache.Scope.PATH, analyzer, true, "severity");
+    cache.analyze(Arrays.asList(b), "ns", ViolationCache.Scope.PATH, analyzer, true, "severity");
+    cache.analyze(Arrays.asList(a), "ns", ViolationCache.Scope.PATH, analyzer, true, "severity");
+    assertEquals(Arrays.asList(a, b), analyzed);
+
+    analyzed.clear();
+    cache.analyze(Arrays.asList(a), "none", ViolationCache.Scope.NONE, analyzer, true, "severity");
+    cache.analyze(Arrays.asList(a), "none", ViolationCache.Scope.NONE, analyzer, true, "severity");
+    assertEquals(Arrays.asList(a, a), analyzed);
+  }
+
+  @Test
+  public void putEvictsLeastRecentlyUsedEntries() throws IOException {
+    final ViolationCache cache = new ViolationCache(folder.newFolder("cache"), 4);
+    cache.put("aa", new JsonArray());
+    cache.put("bb", new JsonArray());
+    cache.get("aa");
+    cache.put("cc", new JsonArray());
+
+    assertEquals(4, cache.getSize());
+    assertNull(cache.get("bb"));
+    assertEquals(new JsonArray(), cache.get("aa"));
+  }
+
+  private File write(String name, String contents) throws IOException {
+    final File file = new File(folder.getRoot(), name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), contents.getBytes());
+    return file;
+  }
+
+  private String getOnlyKey() {
+    final File[] shards = new File(folder.getRoot(), "cache").listFiles();
+    final String name = shards[0].listFiles()[0].getName();
+    return name.substring(0, name.length() - ".json".length());
+  }
+
+  private static ViolationReport report(List<File> files, List<File> analyzed) {
+    final ViolationReport report = new ViolationReport("severity");
+    for (final File file : files) {
+      analyzed.add(file);
+      report.addFile(file.getAbsolutePath());
+      report.add(1, "error", null, "m", null);
+    }
+    return report;
+  }
+}
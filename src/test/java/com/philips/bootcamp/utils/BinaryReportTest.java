@@ -0,0 +1,172 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.philips.bootcamp.domain.ViolationReport;
+
+public class BinaryReportTest {
+  private static final String REPORT = "{"
+      + "\"checkstyle\":{\"report\":{\"b/Main.java\":[{\"line\":\"3\",\"severity\":\"warning\","
+      + "\"rule\":\"Indentation\",\"message\":\"bad\",\"context\":\"8f00c0de\"},{\"line\":\"9\",\"severity\":\"warning\","
+      + "\"rule\":\"Indentation\",\"message\":\"bad\"}],\"a/Main.java\":[]},\"metrics\":{\"errors\":2}},"
+      + "\"pmd\":{\"report\":{\"a/Main.java\":[{\"line\":12,\"priority\":\"3\",\"message\":\"\u00fcn\u00efcode\"}]},"
+      + "\"metrics\":{\"errors\":1}},"
+      + "\"maven\":{\"buildStatus\":\"success\",\"details\":\"[INFO] BUILD SUCCESS\"},"
+      + "\"status\":\"cancelled\"}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void toJsonReturnsTheWrittenReport() throws IOException {
+    final BinaryReport report = write(REPORT);
+
+    assertEquals(REPORT, report.toJson().toString());
+    assertEquals(List.of("checkstyle", "pmd", "maven", "status"), report.getNames());
+  }
+
+  @Test
+  public void getReadsOnePart() throws IOException {
+    final BinaryReport report = write(REPORT);
+
+    assertEquals(new JsonParser().parse(REPORT).getAsJsonObject().get("pmd"), report.get("pmd"));
+    assertEquals("success", report.get("maven").getAsJsonObject().get("buildStatus").getAsString());
+    assertNull(report.get("findbugs"));
+  }
+
+  @Test
+  public void getViolationsLooksUpOneFile() throws IOException {
+    final BinaryReport report = write(REPORT);
+
+    assertEquals(2, report.getViolations("checkstyle", "b/Main.java").size());
+    assertEquals("9", report.getViolations("checkstyle", "b/Main.java").get(1).getAsJsonObject()
+        .get("line").getAsString());
+    assertEquals("8f00c0de", report.getViolations("checkstyle", "b/Main.java").get(0).getAsJsonObject()
+        .get("context").getAsString());
+    assertEquals(0, report.getViolations("checkstyle", "a/Main.java").size());
+    assertNull(report.getViolations("checkstyle", "c/Main.java"));
+    assertNull(report.getViolations("maven", "a/Main.java"));
+  }
+
+  @Test
+  public void getViolationReportReadsTheColumns() throws IOException {
+    final JsonObject json = new JsonParser().parse(REPORT).getAsJsonObject();
+    final BinaryReport report = write(REPORT);
+
+    assertEquals(json.get("checkstyle"), report.getViolationReport("checkstyle").toJson());
+    assertEquals(json.get("pmd"), report.getViolationReport("pmd").toJson());
+    assertNull(report.getViolationReport("maven"));
+  }
+
+  @Test
+  public void writeTakesViolationsFromTypedReports() throws IOException {
+    final JsonObject json = new JsonParser().parse(REPORT).getAsJsonObject();
+    final ViolationReport checkstyle = ViolationReport.fromJson(json.get("checkstyle").getAsJsonObject());
+    json.add("checkstyle", JsonNull.INSTANCE);
+    final File file = new File(folder.getRoot(), "report.bin");
+    BinaryReport.write(file, json, Collections.singletonMap("checkstyle", checkstyle));
+
+    assertEquals(REPORT, BinaryReport.open(file).toJson().toString());
+  }
+
+  @Test
+  public void writerKeepsThePreviousReportUntilCommitted() throws IOException {
+    final File file = new File(folder.getRoot(), "report.bin");
+    BinaryReport.write(file, new JsonParser().parse(REPORT).getAsJsonObject());
+
+    try (BinaryReport.Writer writer = new BinaryReport.Writer(file)) {
+      writer.add("maven", new JsonParser().parse("{\"buildStatus\":\"failure\"}"));
+      assertEquals(REPORT, BinaryReport.open(file).toJson().toString());
+    }
+    assertEquals(REPORT, BinaryReport.open(file).toJson().toString());
+
+    try (BinaryReport.Writer writer = new BinaryReport.Writer(file)) {
+      writer.add("maven", new JsonParser().parse("{\"buildStatus\":\"failure\"}"));
+      writer.commit();
+    }
+    assertEquals("{\"maven\":{\"buildStatus\":\"failure\"}}", BinaryReport.open(file).toJson().toString());
+    assertEquals(List.of("report.bin"), List.of(folder.getRoot().list()));
+  }
+
+  @Test
+  public void writerCopiesPartsOfAnotherReport() throws IOException {
+    final BinaryReport previous = write(REPORT);
+    final File file = new File(folder.getRoot(), "copy.bin");
+    try (BinaryReport.Writer writer = new BinaryReport.Writer(file)) {
+      for (final String name : previous.getNames()) {
+        writer.add(name, previous);
+      }
+      writer.add("missing", previous);
+      writer.commit();
+    }
+
+    final BinaryReport copy = BinaryReport.open(file);
+    assertEquals(REPORT, copy.toJson().toString());
+    assertEquals(previous.getViolations("checkstyle", "b/Main.java"), copy.getViolations("checkstyle", "b/Main.java"));
+  }
+
+  @Test
+  public void openReportsDoNotHoldTheFile() throws IOException {
+    final BinaryReport report = write(REPORT);
+    final File file = new File(folder.getRoot(), "report.bin");
+    BinaryReport.write(file, new JsonParser().parse("{\"maven\":{}}").getAsJsonObject());
+    Files.delete(file.toPath());
+
+    assertEquals(REPORT, report.toJson().toString());
+  }
+
+  @Test
+  public void violationsWithOtherPropertiesAreKeptAsJson() throws IOException {
+    final String json = "{\"pmd\":{\"report\":{\"A.java\":[{\"line\":\"1\",\"column\":\"4\"}]}}}";
+    final BinaryReport report = write(json);
+
+    assertEquals(json, report.toJson().toString());
+    assertNull(report.getViolations("pmd", "A.java"));
+  }
+
+  @Test
+  public void writeSharesRepeatedStrings() throws IOException {
+    final JsonObject report = new JsonParser().parse(REPORT).getAsJsonObject();
+    final File file = folder.newFile("report.bin");
+    BinaryReport.write(file, report);
+
+    assertEquals(1, countOccurrences(Files.readAllBytes(file.toPath()), "Indentation"));
+  }
+
+  @Test(expected = IOException.class)
+  public void openRejectsOtherFiles() throws IOException {
+    final File file = folder.newFile("report.json");
+    Files.write(file.toPath(), REPORT.getBytes());
+    BinaryReport.open(file);
+  }
+
+  private BinaryReport write(String json) throws IOException {
+    final File file = new File(folder.getRoot(), "report.bin");
+    BinaryReport.write(file, new JsonParser().parse(json).getAsJsonObject());
+    return BinaryReport.open(file);
+  }
+
+  private static int countOccurrences(byte[] bytes, String string) {
+    final String contents = new String(bytes, StandardCharsets.ISO_8859_1);
+    int count = 0;
+    for (int i = contents.indexOf(string); i >= 0; i = contents.indexOf(string, i + 1)) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import java.io.File;
+import java.util.Arrays;
+
+public final class Commands {
+  private static final long TIMEOUT_MILLIS = 60_000;
+
+  private Commands() {
+
+  }
+
+  /**
+   * Runs the command in the directory and returns its complete stdout, or null unless it exited
+   * with 0 in time.
+   */
+  public static String run(File directory, String... command) {
+    final ProcessResult result = ProcessRunner.run(directory, Arrays.asList(command), TIMEOUT_MILLIS);
+    return result != null && result.isSuccess() && !result.isTruncated() ? result.getStdout() : null;
+  }
+}
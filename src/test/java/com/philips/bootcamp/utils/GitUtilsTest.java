@@ -0,0 +1,126 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GitUtilsTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File origin;
+  private File mirrors;
+  private String link;
+
+  @Before
+  public void setUp() throws IOException {
+    origin = folder.newFolder("origin");
+    mirrors = folder.newFolder("mirrors");
+    link = origin.toPath().toUri().toString();
+    git(origin, "init", "-q", "-b", "main");
+    commit("A.java", "class A {}");
+  }
+
+  @Test
+  public void checkoutReusesTheWorkspace() throws IOException {
+    final File workspace = new File(folder.getRoot(), "origin-main");
+    assertNull(GitUtils.checkout(link, "main", workspace, mirrors, GitUtils.FULL));
+    final File marker = new File(workspace, ".git/marker");
+    Files.write(marker.toPath(), new byte[0]);
+
+    commit("B.java", "class B {}");
+    Files.write(new File(workspace, "A.java").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(workspace, "target.txt").toPath(), new byte[0]);
+    assertNull(GitUtils.checkout(link, "main", workspace, mirrors, GitUtils.FULL));
+
+    assertTrue(marker.exists());
+    assertEquals(GitUtils.getHeadCommit(origin), GitUtils.getHeadCommit(workspace));
+    assertEquals("class A {}", read(new File(workspace, "A.java")));
+    assertTrue(new File(workspace, "B.java").exists());
+    assertFalse(new File(workspace, "target.txt").exists());
+    assertEquals(1, mirrors.list().length);
+  }
+
+  @Test
+  public void shallowWorkspacesHoldTheTipOnly() throws IOException {
+    commit("B.java", "class B {}");
+    final File workspace = new File(folder.getRoot(), "origin-main");
+    assertNull(GitUtils.checkout(link, "main", workspace, mirrors, GitUtils.SHALLOW));
+
+    assertEquals(GitUtils.getHeadCommit(origin), GitUtils.getHeadCommit(workspace));
+    assertEquals("1", Commands.run(workspace, "git", "rev-list", "--count", "HEAD").trim());
+  }
+
+  @Test
+  public void partialWorkspacesAreUpdatedToo() throws IOException {
+    final File workspace = new File(folder.getRoot(), "origin-main");
+    assertNull(GitUtils.checkout(link, "main", workspace, mirrors, GitUtils.PARTIAL));
+    commit("B.java", "class B {}");
+    assertNull(GitUtils.checkout(link, "main", workspace, mirrors, GitUtils.PARTIAL));
+
+    assertEquals("class B {}", read(new File(workspace, "B.java")));
+  }
+
+  @Test
+  public void branchWorkspacesAreWorktreesOfOneMirror() throws IOException {
+    git(origin, "branch", "dev");
+    commit("B.java", "class B {}");
+    final File main = new File(folder.getRoot(), "origin-main");
+    final File dev = new File(folder.getRoot(), "origin-dev");
+    assertNull(GitUtils.checkout(link, "main", main, mirrors, GitUtils.WORKTREE));
+    assertNull(GitUtils.checkout(link, "dev", dev, mirrors, GitUtils.WORKTREE));
+
+    assertTrue(new File(main, ".git").isFile());
+    assertTrue(new File(main, "B.java").exists());
+    assertFalse(new File(dev, "B.java").exists());
+
+    commit("C.java", "class C {}");
+    Files.write(new File(main, "target.txt").toPath(), new byte[0]);
+    assertNull(GitUtils.checkout(link, "main", main, mirrors, GitUtils.WORKTREE));
+    assertEquals(GitUtils.getHeadCommit(origin), GitUtils.getHeadCommit(main));
+    assertFalse(new File(main, "target.txt").exists());
+
+    final File mirror = GitUtils.getMirror(mirrors, link);
+    GitUtils.deleteWorkspace(dev);
+    assertFalse(dev.exists());
+    assertEquals(1, new File(mirror, "worktrees").list().length);
+  }
+
+  @Test
+  public void checkoutReportsUnknownBranches() {
+    final File workspace = new File(folder.getRoot(), "origin-none");
+    assertNotNull(GitUtils.checkout(link, "none", workspace, mirrors, GitUtils.FULL));
+    assertFalse(workspace.exists());
+    assertNotNull(GitUtils.checkout(link + "missing", "main", workspace, mirrors, GitUtils.FULL));
+  }
+
+  private void commit(String file, String contents) throws IOException {
+    Files.write(new File(origin, file).toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    git(origin, "add", file);
+    git(origin, "-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", file);
+  }
+
+  private static void git(File directory, String... arguments) {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    assertNotNull(Commands.run(directory, command));
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+}
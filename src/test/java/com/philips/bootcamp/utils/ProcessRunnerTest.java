@@ -0,0 +1,93 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ProcessRunnerTest {
+
+  // writes far more to stderr than a pipe buffer holds before it prints to stdout
+  public static class Noisy {
+    public static void main(String[] args) {
+      final String line = new String(new char[1023]).replace('\0', 'e');
+      for (int i = 0; i < 1024; i++) {
+        System.err.println(line);
+      }
+      System.out.println("out");
+      System.exit(3);
+    }
+  }
+
+  private static List<String> noisy() {
+    return Arrays.asList(java(), "-cp", System.getProperty("java.class.path"), Noisy.class.getName());
+  }
+
+  @Test(timeout = 60000)
+  public void runDrainsStderrAndReportsExitCode() {
+    final ProcessResult result = ProcessRunner.run(null, noisy(), 0);
+
+    assertEquals(3, result.getExitCode());
+    assertFalse(result.isSuccess());
+    assertEquals("out", result.getStdout());
+    assertEquals(1024 * 1024 - 1, result.getStderr().length());
+    assertFalse(result.isTruncated());
+  }
+
+  @Test(timeout = 60000)
+  public void runMergesStderrIntoStdoutWithoutStderrSink() {
+    final List<String> lines = new ArrayList<>();
+    final ProcessResult result = ProcessRunner.run(null, noisy(), lines::add, null, 0);
+
+    assertEquals(3, result.getExitCode());
+    assertEquals(1025, lines.size());
+    assertTrue(lines.contains("out"));
+  }
+
+  @Test(timeout = 60000)
+  public void runAsyncCompletesWithResult() throws Exception {
+    final ProcessResult result = ProcessRunner.runAsync(null, noisy(), 0).get(60, TimeUnit.SECONDS);
+    assertEquals("out", result.getStdout());
+  }
+
+  // sleeps in a child of its own, so a kill has to take the whole tree down
+  public static class Hanging {
+    public static void main(String[] args) throws Exception {
+      if (args.length == 0) {
+        new ProcessBuilder(java(), "-cp", System.getProperty("java.class.path"), Hanging.class.getName(), "child")
+            .inheritIO().start();
+      }
+      Thread.sleep(600000);
+    }
+  }
+
+  private static String java() {
+    return new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+  }
+
+  @Test(timeout = 60000)
+  public void runKillsProcessTreeAfterTimeout() {
+    final List<String> command =
+        Arrays.asList(java(), "-cp", System.getProperty("java.class.path"), Hanging.class.getName());
+    final ProcessResult result = ProcessRunner.run(null, command, 3000);
+
+    assertTrue(result.isTimedOut());
+    assertFalse(result.isSuccess());
+    assertEquals(0, ProcessRunner.getRunning());
+  }
+
+  @Test
+  public void runReturnsNullForMissingExecutable() {
+    assertNull(ProcessRunner.run(null, Arrays.asList("no-such-executable-for-fences"), 0));
+    assertEquals(0, ProcessRunner.getRunning());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.philips.bootcamp.domain.ViolationReport;
+
+public class ReportHistoryTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void getReportRebuildsEveryRun() throws IOException {
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 3, 0);
+    final List<JsonObject> reports = appendRuns(history, 8);
+
+    for (int run = 1; run <= reports.size(); run++) {
+      assertEquals(reports.get(run - 1), history.getReport(run));
+    }
+    assertNull(history.getReport(9));
+  }
+
+  @Test
+  public void historyIsReadBackFromDisk() throws IOException {
+    final List<JsonObject> reports = appendRuns(new ReportHistory(folder.getRoot(), 3, 0), 5);
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 3, 0);
+
+    assertEquals(reports.get(3), history.getReport(4));
+    assertEquals(6, history.append(report(6), "c6"));
+    assertEquals(report(6), history.getReport(6));
+  }
+
+  @Test
+  public void diffKeepsOnlyChangedFiles() {
+    final JsonObject delta = ReportHistory.diff(report(1), report(2));
+    final JsonObject pmd = delta.get("tools").getAsJsonObject().get("pmd").getAsJsonObject();
+
+    assertEquals(List.of("Changing.java", "Added2.java"), new ArrayList<>(pmd.get("files").getAsJsonObject().keySet()));
+    assertEquals(report(2), ReportHistory.apply(report(1), delta));
+  }
+
+  @Test
+  public void appendStoresTypedReportsAsDeltas() throws IOException {
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 3, 0);
+    for (int run = 1; run <= 3; run++) {
+      final JsonObject report = new JsonParser().parse("{\"pmd\":null,\"maven\":{}}").getAsJsonObject();
+      final ViolationReport pmd = new ViolationReport("priority");
+      pmd.addFile("Stable.java");
+      pmd.add(1, "3", "R", "m", null);
+      pmd.addFile("Changing.java");
+      pmd.add(run, "3", "R", "m", null);
+      history.append(report, Collections.singletonMap("pmd", pmd), "c" + run);
+    }
+
+    final String changing = "{\"Stable.java\":[{\"line\":\"1\",\"priority\":\"3\",\"rule\":\"R\","
+        + "\"message\":\"m\"}],\"Changing.java\":[{\"line\":\"3\",\"priority\":\"3\",\"rule\":\"R\","
+        + "\"message\":\"m\"}]}";
+    assertEquals(new JsonParser().parse(changing), history.getReport(3).get("pmd").getAsJsonObject().get("report"));
+    assertEquals(2, history.getRuns().get(2).getAsJsonObject().get("errors").getAsJsonObject().get("pmd").getAsInt());
+    final String log = new String(Files.readAllBytes(new File(folder.getRoot(), ReportHistory.LOG).toPath()));
+    assertEquals(1, log.split("Stable.java", -1).length - 1);
+  }
+
+  @Test
+  public void getRunsReportsErrorsPerRun() throws IOException {
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 3, 0);
+    appendRuns(history, 3);
+    final JsonArray runs = history.getRuns();
+
+    assertEquals(3, runs.size());
+    assertEquals("c2", runs.get(1).getAsJsonObject().get("commit").getAsString());
+    assertEquals(2, runs.get(1).getAsJsonObject().get("errors").getAsJsonObject().get("pmd").getAsInt());
+  }
+
+  @Test
+  public void appendCompactsOldRuns() throws IOException {
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 2, 3);
+    final List<JsonObject> reports = appendRuns(history, 6);
+
+    assertEquals(3, history.getRuns().size());
+    assertNull(history.getReport(3));
+    assertEquals(reports.get(3), history.getReport(4));
+    assertEquals(reports.get(5), new ReportHistory(folder.getRoot(), 2, 3).getReport(6));
+  }
+
+  @Test
+  public void damagedIndexLineEndsTheHistory() throws IOException {
+    final ReportHistory written = new ReportHistory(folder.getRoot(), 3, 0);
+    appendRuns(written, 2);
+    Files.write(new File(folder.getRoot(), ReportHistory.INDEX).toPath(), "{\"run\":3,".getBytes(),
+        StandardOpenOption.APPEND);
+
+    final ReportHistory history = new ReportHistory(folder.getRoot(), 3, 0);
+    assertEquals(3, history.append(report(3), "c3"));
+    assertEquals(report(3), new ReportHistory(folder.getRoot(), 3, 0).getReport(3));
+    assertEquals(3, history.getRuns().size());
+  }
+
+  private static List<JsonObject> appendRuns(ReportHistory history, int runs) throws IOException {
+    final List<JsonObject> reports = new ArrayList<>();
+    for (int run = 1; run <= runs; run++) {
+      reports.add(report(run));
+      history.append(report(run), "c" + run);
+    }
+    return reports;
+  }
+
+  // every run changes one file, adds another and drops the one added two runs before
+  private static JsonObject report(int run) {
+    final StringBuilder files = new StringBuilder("\"Stable.java\":[{\"line\":\"1\"}]");
+    files.append(",\"Changing.java\":[{\"line\":\"" + run + "\"}]");
+    files.append(",\"Added" + run + ".java\":[]");
+    if (run > 1) {
+      files.append(",\"Added" + (run - 1) + ".java\":[]");
+    }
+    return new JsonParser().parse("{\"pmd\":{\"report\":{" + files + "},\"metrics\":{\"errors\":" + run
+        + "}},\"maven\":{\"buildStatus\":\"" + (run % 2 == 0 ? "success" : "failure") + "\"}}")
+        .getAsJsonObject();
+  }
+}
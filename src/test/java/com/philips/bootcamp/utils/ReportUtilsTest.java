@@ -0,0 +1,126 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.philips.bootcamp.domain.ViolationReport;
+
+public class ReportUtilsTest {
+
+  @Test
+  public void getFilesReturnsNullWithoutFilesSetting() {
+    assertNull(ReportUtils.getFiles(new JsonObject()));
+  }
+
+  @Test
+  public void getFilesReturnsFilesSetting() {
+    final JsonObject settings = new JsonObject();
+    final JsonArray files = new JsonArray();
+    files.add("A.java");
+    settings.add("files", files);
+    assertEquals(List.of(new File("A.java")), ReportUtils.getFiles(settings));
+  }
+
+  @Test
+  public void mergeReplacesChangedAndDropsRemovedFiles() {
+    final JsonParser parser = new JsonParser();
+    final JsonObject previous = parser.parse("{\"report\":{\"A\":[{}],\"B\":[{},{}],\"C\":[{}]},"
+        + "\"metrics\":{\"errors\":4}}").getAsJsonObject();
+    final JsonObject partial = parser.parse("{\"report\":{\"B\":[],\"D\":[{}]},"
+        + "\"metrics\":{\"errors\":1}}").getAsJsonObject();
+    final GitUtils.ChangeSet changes = new GitUtils.ChangeSet();
+    changes.changed.add("B");
+    changes.changed.add("D");
+    changes.removed.add("C");
+
+    final JsonObject merged = ReportUtils.merge(previous, partial, changes);
+    assertEquals(parser.parse("{\"report\":{\"A\":[{}],\"B\":[],\"D\":[{}]},\"metrics\":{\"errors\":2}}"), merged);
+  }
+
+  @Test
+  public void mergeFoldsTypedReports() {
+    final JsonParser parser = new JsonParser();
+    final ViolationReport previous = ViolationReport.fromJson(parser.parse("{\"report\":{\"A\":[{\"line\":\"1\"}],"
+        + "\"B\":[{\"line\":\"2\"}],\"C\":[]}}").getAsJsonObject());
+    final ViolationReport partial = ViolationReport.fromJson(parser.parse("{\"report\":{\"B\":[],"
+        + "\"D\":[{\"line\":\"4\"}]}}").getAsJsonObject());
+    final GitUtils.ChangeSet changes = new GitUtils.ChangeSet();
+    changes.changed.add("B");
+    changes.changed.add("D");
+    changes.removed.add("C");
+
+    assertEquals(parser.parse("{\"report\":{\"A\":[{\"line\":\"1\"}],\"B\":[],\"D\":[{\"line\":\"4\"}]},"
+        + "\"metrics\":{\"errors\":2}}"), ReportUtils.merge(previous, partial, changes).toJson());
+  }
+
+  @Test
+  public void mergeWithoutChangesReturnsPartialReport() {
+    final JsonObject partial = new JsonObject();
+    assertEquals(partial, ReportUtils.merge(new JsonObject(), partial, null));
+  }
+
+  @Test
+  public void combineJoinsReportsAndAddsErrors() {
+    final JsonParser parser = new JsonParser();
+    final JsonObject a = parser.parse("{\"report\":{\"A\":[{}]},\"metrics\":{\"errors\":1}}").getAsJsonObject();
+    final JsonObject b = parser.parse("{\"report\":{\"B\":[{},{}]},\"metrics\":{\"errors\":2}}").getAsJsonObject();
+
+    assertEquals(parser.parse("{\"report\":{\"A\":[{}],\"B\":[{},{}]},\"metrics\":{\"errors\":3}}"),
+        ReportUtils.combine(List.of(a, b)));
+    assertNull(ReportUtils.combine(Arrays.asList(a, null)));
+  }
+
+  @Test
+  public void getContextIgnoresIndentationAndLineShifts() {
+    final List<String> lines = List.of("class A {", "  int a;", "  int b;", "}");
+    final List<String> shifted = List.of("// header", "class A {", "    int a;", "    int b;", "}");
+
+    assertEquals(ReportUtils.getContext(lines, 2), ReportUtils.getContext(shifted, 3));
+    assertNotEquals(ReportUtils.getContext(lines, 2), ReportUtils.getContext(lines, 3));
+  }
+
+  @Test
+  public void diffMatchesMovedViolationsAndSeparatesNewFromFixed() {
+    final JsonParser parser = new JsonParser();
+    final JsonObject past = parser.parse("{\"report\":{\"A\":["
+        + "{\"line\":\"3\",\"rule\":\"R\",\"message\":\"found 12\",\"context\":\"0000000a\"},"
+        + "{\"line\":\"9\",\"rule\":\"R\",\"message\":\"found 12\",\"context\":\"0000000b\"}]}}")
+        .getAsJsonObject();
+    final JsonObject future = parser.parse("{\"report\":{\"A\":["
+        + "{\"line\":\"5\",\"rule\":\"R\",\"message\":\"found 13\",\"context\":\"0000000a\"},"
+        + "{\"line\":\"20\",\"rule\":\"R\",\"message\":\"found 12\",\"context\":\"0000000c\"}]}}")
+        .getAsJsonObject();
+
+    final JsonObject diff = ReportUtils.diff(future, past);
+    assertEquals(1, diff.get("unchanged").getAsInt());
+    assertEquals(1, diff.get("new").getAsInt());
+    assertEquals(1, diff.get("fixed").getAsInt());
+    assertEquals("20", diff.get("newViolations").getAsJsonArray().get(0).getAsJsonObject().get("line").getAsString());
+    assertEquals("A", diff.get("fixedViolations").getAsJsonArray().get(0).getAsJsonObject().get("file").getAsString());
+  }
+
+  @Test
+  public void diffMatchesViolationsWithoutContextByMessage() {
+    final JsonParser parser = new JsonParser();
+    final JsonObject past = parser.parse("{\"report\":{\"A\":[{\"line\":\"3\",\"message\":\"m\"},"
+        + "{\"line\":\"4\",\"message\":\"m\"}]}}").getAsJsonObject();
+    final JsonObject future = parser.parse("{\"report\":{\"A\":["
+        + "{\"line\":\"7\",\"rule\":\"R\",\"message\":\"m\",\"context\":\"0000000a\"}]}}")
+        .getAsJsonObject();
+
+    final JsonObject diff = ReportUtils.diff(future, past);
+    assertEquals(1, diff.get("unchanged").getAsInt());
+    assertEquals(0, diff.get("new").getAsInt());
+    assertEquals(1, diff.get("fixed").getAsInt());
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * The copyright of this file belongs to Koninklijke Philips N.V., 2019.
+ */
+package com.philips.bootcamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.google.gson.JsonObject;
+
+public class TrashTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void deleteMovesTheFolderAwayAndPurgesIt() throws IOException, InterruptedException {
+    final File trashDirectory = folder.newFolder("trash");
+    final Trash trash = new Trash(trashDirectory, 2);
+    final File workspace = createTree(folder.newFolder("workspace"));
+
+    trash.delete(workspace);
+    assertFalse(workspace.exists());
+    assertTrue(trash.awaitPurged(10000));
+
+    final JsonObject stats = trash.getStats();
+    assertEquals(0, trashDirectory.list().length);
+    assertEquals(1, stats.get("purged").getAsInt());
+    assertEquals(0, stats.get("pending").getAsInt());
+    assertEquals(30, stats.get("bytesReclaimed").getAsLong());
+  }
+
+  @Test
+  public void resumePurgesLeftovers() throws IOException, InterruptedException {
+    final File trashDirectory = folder.newFolder("trash");
+    createTree(new File(trashDirectory, "1-workspace"));
+    createTree(new File(trashDirectory, "2-workspace"));
+
+    final Trash trash = new Trash(trashDirectory, 2);
+    trash.resume();
+    assertTrue(trash.awaitPurged(10000));
+
+    assertEquals(0, trashDirectory.list().length);
+    assertEquals(60, trash.getStats().get("bytesReclaimed").getAsLong());
+  }
+
+  // three files of ten bytes in nested folders
+  private static File createTree(File root) throws IOException {
+    final File nested = new File(root, "src/main");
+    nested.mkdirs();
+    Files.write(new File(root, "pom.xml").toPath(), new byte[10]);
+    Files.write(new File(root, "src/A.java").toPath(), new byte[10]);
+    Files.write(new File(nested, "B.java").toPath(), new byte[10]);
+    return root;
+  }
+}